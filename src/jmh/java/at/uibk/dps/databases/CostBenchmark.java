@@ -0,0 +1,55 @@
+package at.uibk.dps.databases;
+
+import at.uibk.dps.util.Provider;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures calculating the cost of a function execution with known provider prices, one at a time and as a batch of
+ * what-if evaluations over memory sizes and runtimes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CostBenchmark {
+    private static final int[] MEMORY_SIZES = {128, 256, 512, 1024, 2048, 4096};
+    private static final int BATCH = 1024;
+
+    @Param({"AWS", "GOOGLE", "IBM"})
+    Provider provider;
+
+    private final ProviderPrice price = new ProviderPrice(0.0000002, 0.0000166667, 0.0000100, 100);
+    private CostModel costModel;
+    private final int[] memorySizes = new int[BATCH];
+    private final double[] runtimes = new double[BATCH];
+    private final double[] costs = new double[BATCH];
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        costModel = new CostModel(Collections.singletonMap(provider, price));
+        for (int i = 0; i < BATCH; i++) {
+            memorySizes[i] = MEMORY_SIZES[i % MEMORY_SIZES.length];
+            runtimes[i] = 50 + i % 5000;
+        }
+    }
+
+    @Benchmark
+    public double calculateCost() {
+        index++;
+        return MariaDBAccess.calculateCost(MEMORY_SIZES[index % MEMORY_SIZES.length], 50 + index % 5000, provider,
+                price);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public double[] calculateCosts() {
+        costModel.calculateCosts(provider, memorySizes, runtimes, costs);
+        return costs;
+    }
+}
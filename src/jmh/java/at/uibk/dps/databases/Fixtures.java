@@ -0,0 +1,55 @@
+package at.uibk.dps.databases;
+
+import at.uibk.dps.util.Provider;
+
+/**
+ * Shared test data of the benchmarks.
+ */
+final class Fixtures {
+    static final String[] REGIONS = {"us-east-1", "eu-central-1", "ap-northeast-1"};
+
+    private Fixtures() {
+    }
+
+    /**
+     * @param index of the function
+     *
+     * @return the ARN of an AWS Lambda function
+     */
+    static String functionId(int index) {
+        return "arn:aws:lambda:" + REGIONS[index % REGIONS.length] + ":123456789012:function:benchmark-" + index;
+    }
+
+    /**
+     * Creates a stand-in of the metadata DB with the given amount of deployments. Two deployments share an
+     * implementation and ten implementations share a type.
+     *
+     * @param functions the amount of deployments
+     *
+     * @return the stand-in
+     *
+     * @throws Exception if the stand-in cannot be created
+     */
+    static InMemoryDataSource metadataDB(int functions) throws Exception {
+        InMemoryDataSource dataSource = new InMemoryDataSource();
+        for (int i = 0; i < functions; i++) {
+            int implementationId = i / 2;
+            dataSource.addRow("functiondeployment", functionId(i), "id", i, "KMS_Arn", functionId(i),
+                    "functionImplementation_id", implementationId, "functionType_id", implementationId / 10,
+                    "memorySize", 128 << (i % 4),
+                    "invocations", 0, "avgRTT", 0.0, "avgRuntime", 0.0, "avgCost", 0.0, "successRate", 0.0,
+                    "avgLoopCounter", 0);
+            dataSource.addRow("functionimplementation", implementationId, "id", implementationId,
+                    "functionType_id", implementationId / 10, "invocations", 0, "avgRTT", 0.0, "avgCost", 0.0,
+                    "successRate", 0.0);
+            dataSource.addRow("functiontype", implementationId / 10, "id", implementationId / 10,
+                    "invocations", 0, "avgRTT", 0.0, "avgCost", 0.0, "successRate", 0.0);
+        }
+        for (Provider provider : Provider.values()) {
+            dataSource.addRow("provider", provider.name(), "id", provider.ordinal(), "name", provider.name(),
+                    "invocationCost", 0.0000002, "durationGBpsCost", 0.0000166667, "durationGHzpsCost", 0.0000100,
+                    "unitTimems", 100);
+        }
+        return dataSource;
+    }
+}
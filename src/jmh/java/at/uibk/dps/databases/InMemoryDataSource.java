@@ -0,0 +1,181 @@
+package at.uibk.dps.databases;
+
+import javax.sql.DataSource;
+import javax.sql.RowSetMetaData;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetFactory;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stand-in for the metadata DB. Queries return the row of the table in the FROM clause whose key equals the first
+ * parameter, or all rows of the table if there is no parameter. Updates and batches are accepted without changing the
+ * rows.
+ */
+class InMemoryDataSource {
+    private static final Pattern TABLE = Pattern.compile("\\bFROM\\s+(\\w+)", Pattern.CASE_INSENSITIVE);
+
+    private final Map<String, Map<Object, Map<String, Object>>> tables = new ConcurrentHashMap<>();
+    private final RowSetFactory rowSetFactory;
+
+    InMemoryDataSource() throws SQLException {
+        rowSetFactory = RowSetProvider.newFactory();
+    }
+
+    /**
+     * Adds a row to the given table.
+     *
+     * @param table the name of the table
+     * @param key   the value the row is queried with
+     * @param row   the columns of the row, alternating name and value
+     *
+     * @return this data source
+     */
+    InMemoryDataSource addRow(String table, Object key, Object... row) {
+        Map<String, Object> columns = new LinkedHashMap<>();
+        for (int i = 0; i < row.length; i += 2) {
+            columns.put((String) row[i], row[i + 1]);
+        }
+        tables.computeIfAbsent(table, k -> new ConcurrentHashMap<>()).put(key, columns);
+        return this;
+    }
+
+    /**
+     * @return a data source whose connections answer from the rows of this stand-in
+     */
+    DataSource toDataSource() {
+        InvocationHandler dataSource = (proxy, method, args) -> {
+            if (method.getName().equals("getConnection")) {
+                return newConnection();
+            }
+            return defaultValue(method.getReturnType());
+        };
+        return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DataSource.class},
+                dataSource);
+    }
+
+    private Connection newConnection() {
+        InvocationHandler connection = (proxy, method, args) -> {
+            if (method.getName().equals("prepareStatement")) {
+                return newStatement((String) args[0]);
+            }
+            return defaultValue(method.getReturnType());
+        };
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                connection);
+    }
+
+    private PreparedStatement newStatement(String sql) {
+        Map<Integer, Object> parameters = new HashMap<>();
+        int[] batch = new int[1];
+        InvocationHandler statement = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "setObject":
+                    parameters.put((Integer) args[0], args[1]);
+                    return null;
+                case "executeQuery":
+                    return query(sql, parameters.isEmpty() ? null : parameters.get(1), parameters.isEmpty());
+                case "executeUpdate":
+                    return 1;
+                case "addBatch":
+                    batch[0]++;
+                    return null;
+                case "executeBatch":
+                    int[] counts = new int[batch[0]];
+                    Arrays.fill(counts, 1);
+                    batch[0] = 0;
+                    return counts;
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        };
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, statement);
+    }
+
+    /**
+     * Returns the row of the queried table with the given key, or all rows of the table.
+     *
+     * @param sql the query
+     * @param key the first parameter of the query
+     * @param all whether all rows of the table are returned
+     *
+     * @return a result with the rows, empty if there are none
+     *
+     * @throws SQLException if the result cannot be created
+     */
+    private CachedRowSet query(String sql, Object key, boolean all) throws SQLException {
+        Matcher matcher = TABLE.matcher(sql);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        if (matcher.find()) {
+            Map<Object, Map<String, Object>> table = tables.get(matcher.group(1));
+            if (table != null && all) {
+                rows.addAll(table.values());
+            } else if (table != null && table.get(key) != null) {
+                rows.add(table.get(key));
+            }
+        }
+        CachedRowSet rowSet = rowSetFactory.createCachedRowSet();
+        // an empty result still needs a column, all rows of a table have the same columns
+        Map<String, Object> first = rows.isEmpty() ? null : rows.get(0);
+        List<String> names = first == null ? Collections.singletonList("id") : new ArrayList<>(first.keySet());
+        RowSetMetaData metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            metaData.setColumnName(i + 1, names.get(i));
+            metaData.setColumnLabel(i + 1, names.get(i));
+            metaData.setColumnType(i + 1, first == null ? Types.INTEGER : sqlType(first.get(names.get(i))));
+        }
+        rowSet.setMetaData(metaData);
+        if (!rows.isEmpty()) {
+            rowSet.moveToInsertRow();
+            for (Map<String, Object> row : rows) {
+                for (int i = 0; i < names.size(); i++) {
+                    rowSet.updateObject(i + 1, row.get(names.get(i)));
+                }
+                rowSet.insertRow();
+            }
+            rowSet.moveToCurrentRow();
+        }
+        rowSet.beforeFirst();
+        return rowSet;
+    }
+
+    private static int sqlType(Object value) {
+        if (value instanceof Integer) {
+            return Types.INTEGER;
+        } else if (value instanceof Long) {
+            return Types.BIGINT;
+        } else if (value instanceof Double) {
+            return Types.DOUBLE;
+        }
+        return Types.VARCHAR;
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,32 @@
+package at.uibk.dps.databases;
+
+import org.bson.types.ObjectId;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stand-in for the mongo database that only counts the written log entries.
+ */
+class InMemoryLogStore implements LogStore {
+    private final AtomicLong inserted = new AtomicLong();
+    private final AtomicLong done = new AtomicLong();
+
+    @Override
+    public void insert(List<LogRecord> logs) {
+        inserted.addAndGet(logs.size());
+    }
+
+    @Override
+    public void setDone(Long value, List<ObjectId> ids) {
+        done.addAndGet(ids.size());
+    }
+
+    long getInserted() {
+        return inserted.get();
+    }
+
+    long getDone() {
+        return done.get();
+    }
+}
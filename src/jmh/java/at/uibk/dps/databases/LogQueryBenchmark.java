@@ -0,0 +1,79 @@
+package at.uibk.dps.databases;
+
+import at.uibk.dps.util.Event;
+import at.uibk.dps.util.Type;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the queries the enactment engine runs on the saved log entries of the current workflow execution.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LogQueryBenchmark {
+    /**
+     * The amount of log entries saved before the queries run.
+     */
+    @Param({"1000", "100000"})
+    int entries;
+    /**
+     * The amount of iterations of the open parallelFor loop, i.e. of the unused end times.
+     */
+    @Param({"10", "1000"})
+    int loopSize;
+
+    private String functionId;
+    private int loopCounter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MongoDBAccess.setStore(new InMemoryLogStore());
+        MongoDBAccess.enableWriteBehind(1000, 100, 100000);
+        functionId = Fixtures.functionId(0);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < entries; i++) {
+            MongoDBAccess.saveLog(Event.FUNCTION_END, Fixtures.functionId(1 + i % 10), "deployment", "function",
+                    "type", null, 100L, true, -1, -1, start + i, Type.EXEC);
+        }
+        // leave a parallelFor open, so its end times are available
+        for (int i = 0; i < loopSize; i++) {
+            MongoDBAccess.saveLog(Event.FUNCTION_END, functionId, "deployment", "function", "type", null, 100L + i,
+                    true, i, loopSize, start, Type.EXEC);
+        }
+    }
+
+    @Benchmark
+    public long getLastEndDateOverall() {
+        return MongoDBAccess.getLastEndDateOverall();
+    }
+
+    @Benchmark
+    public long getLastEndDateOutOfLoop() {
+        return MongoDBAccess.getLastEndDateOutOfLoop();
+    }
+
+    @Benchmark
+    public long getLastEndDateInLoop() {
+        return MongoDBAccess.getLastEndDateInLoop();
+    }
+
+    /**
+     * Takes the earliest end time and saves the next iteration starting at it, so the amount of unused end times
+     * stays the same.
+     *
+     * @return the start time
+     */
+    @Benchmark
+    public long getFirstAvailableStartTime() {
+        long start = MongoDBAccess.getFirstAvailableStartTime(functionId);
+        loopCounter = (loopCounter + 1) % loopSize;
+        MongoDBAccess.saveLog(Event.FUNCTION_END, functionId, "deployment", "function", "type", null, 100L, true,
+                loopCounter, loopSize, start, Type.EXEC);
+        return start;
+    }
+}
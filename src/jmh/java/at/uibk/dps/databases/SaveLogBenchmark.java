@@ -0,0 +1,127 @@
+package at.uibk.dps.databases;
+
+import at.uibk.dps.util.Event;
+import at.uibk.dps.util.Type;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures saving the log entries of parallelFor loops from several threads, either into the log of a single workflow
+ * execution or each into the log of its own one. The log entries are written to an in-memory stand-in in the
+ * background.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SaveLogBenchmark {
+    private static final String OUTPUT = "{\"runtime\":120,\"functionMemory\":256}";
+
+    /**
+     * The amount of log entries saved per invocation.
+     */
+    @Param({"1000", "10000"})
+    int entries;
+    /**
+     * The amount of threads saving log entries at the same time.
+     */
+    @Param({"1", "4", "16"})
+    int threads;
+    /**
+     * The amount of iterations of a parallelFor loop.
+     */
+    @Param({"10", "100"})
+    int loopSize;
+
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MongoDBAccess.setStore(new InMemoryLogStore());
+        MongoDBAccess.enableWriteBehind(1000, 100, 100000);
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void saveLog() throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        int perThread = entries / threads;
+        for (int t = 0; t < threads; t++) {
+            String functionId = Fixtures.functionId(t);
+            futures.add(executor.submit(() -> saveLoops(functionId, perThread)));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    @Benchmark
+    public void saveLogPerWorkflow() throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        int perThread = entries / threads;
+        for (int t = 0; t < threads; t++) {
+            String functionId = Fixtures.functionId(t);
+            futures.add(executor.submit(() -> {
+                try (WorkflowContext workflow = MongoDBAccess.startWorkflow()) {
+                    saveLoops(workflow, functionId, perThread);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    /**
+     * Saves the log entries of parallelFor loops of the given function.
+     *
+     * @param functionId of the function
+     * @param amount     of log entries
+     */
+    private void saveLoops(String functionId, int amount) {
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < amount; i++) {
+            int loopCounter = i % loopSize;
+            MongoDBAccess.saveLog(Event.FUNCTION_END, functionId, "deployment", "function", "type", OUTPUT,
+                    100L + i % 50, true, loopCounter, loopSize, start + i, Type.EXEC);
+            if (loopCounter == loopSize - 1) {
+                MongoDBAccess.saveLog(Event.PARALLEL_FOR_END, null, null, null, null, null, 0L, true, -1, -1,
+                        start + i, Type.EXEC);
+            }
+        }
+    }
+
+    /**
+     * Saves the log entries of parallelFor loops of the given function into the log of the given workflow execution.
+     *
+     * @param workflow   to save the log entries to
+     * @param functionId of the function
+     * @param amount     of log entries
+     */
+    private void saveLoops(WorkflowContext workflow, String functionId, int amount) {
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < amount; i++) {
+            int loopCounter = i % loopSize;
+            workflow.saveLog(Event.FUNCTION_END, functionId, "deployment", "function", "type", OUTPUT,
+                    100L + i % 50, true, loopCounter, loopSize, start + i, Type.EXEC);
+            if (loopCounter == loopSize - 1) {
+                workflow.saveLog(Event.PARALLEL_FOR_END, null, null, null, null, null, 0L, true, -1, -1,
+                        start + i, Type.EXEC);
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package at.uibk.dps.databases;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures updating the metadata DB with a batch of log entries. The metadata DB and the mongo database are replaced
+ * by in-memory stand-ins, so only the work of the update itself is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UpdateBenchmark {
+    /**
+     * The amount of log entries per update.
+     */
+    @Param({"1000", "10000"})
+    int entries;
+    /**
+     * The amount of different deployments the log entries belong to.
+     */
+    @Param({"10", "100"})
+    int functions;
+    /**
+     * The amount of threads of the parallel and atomic update.
+     */
+    @Param({"1", "4"})
+    int threads;
+
+    private List<Document> documents;
+    private List<UpdateEntry> updateEntries;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        MariaDBAccess.setDataSource(Fixtures.metadataDB(functions).toDataSource());
+        MongoDBAccess.setStore(new InMemoryLogStore());
+        documents = new ArrayList<>();
+        updateEntries = new ArrayList<>();
+        for (int i = 0; i < entries; i++) {
+            Document document = new Document("_id", new ObjectId())
+                    .append("function_id", Fixtures.functionId(i % functions))
+                    .append("RTT", 100L + i % 50)
+                    .append("cost", -1.0)
+                    .append("success", i % 20 != 0)
+                    .append("maxLoopCounter", i % 3 == 0 ? 10 : null)
+                    .append("output", "{\"result\":\"" + i + "\",\"runtime\":" + (80 + i % 40) + "}");
+            documents.add(document);
+            updateEntries.add(UpdateEntry.fromDocument(document));
+        }
+    }
+
+    @Benchmark
+    public void updateMD() {
+        for (Document document : documents) {
+            MariaDBAccess.updateMD.accept(document);
+        }
+        MongoDBAccess.flushDone();
+    }
+
+    @Benchmark
+    public void updateAggregated() {
+        MariaDBAccess.updateAggregated(updateEntries);
+    }
+
+    @Benchmark
+    public void updateParallel() {
+        MariaDBAccess.updateParallel(updateEntries, threads);
+    }
+
+    @Benchmark
+    public void updateBatched() {
+        MariaDBAccess.updateBatched(updateEntries);
+    }
+
+    @Benchmark
+    public void updateAtomic() {
+        MariaDBAccess.updateAtomic(updateEntries, threads);
+    }
+}
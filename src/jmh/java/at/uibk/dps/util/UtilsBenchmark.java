@@ -0,0 +1,57 @@
+package at.uibk.dps.util;
+
+import at.uibk.dps.exceptions.RegionDetectionException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures detecting the provider and the region of resource links, for links that are cached by the detection and
+ * for links that are not.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class UtilsBenchmark {
+    private static final String[] LINKS = {
+            "arn:aws:lambda:us-east-1:123456789012:function:benchmark",
+            "https://europe-west1-project.cloudfunctions.net/benchmark",
+            "https://eu-gb.functions.cloud.ibm.com/api/v1/web/namespace/default/benchmark.json",
+            "https://eu-de.functions.appdomain.cloud/api/v1/web/namespace/default/benchmark.json"
+    };
+
+    /**
+     * More distinct links than the cache of the detection holds, so every detection misses the cache.
+     */
+    private String[] manyLinks;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        manyLinks = new String[3 * 4096];
+        for (int i = 0; i < manyLinks.length; i++) {
+            manyLinks[i] = LINKS[i % LINKS.length].replace("benchmark", "benchmark-" + i);
+        }
+    }
+
+    @Benchmark
+    public Provider detectProvider() {
+        index++;
+        return Utils.detectProvider(LINKS[index % LINKS.length]);
+    }
+
+    @Benchmark
+    public String detectRegion() throws RegionDetectionException {
+        index++;
+        return Utils.detectRegion(LINKS[index % LINKS.length]);
+    }
+
+    @Benchmark
+    public String detectRegionUncached() throws RegionDetectionException {
+        index++;
+        return Utils.detectRegion(manyLinks[index % manyLinks.length]);
+    }
+}
@@ -0,0 +1,191 @@
+package at.uibk.dps.cronjob;
+
+import at.uibk.dps.databases.MariaDBAccess;
+import at.uibk.dps.databases.MongoDBAccess;
+import at.uibk.dps.util.UpdateMode;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class to update the metadata DB in near real time from a change stream on the logs. Requires the mongo database to
+ * run as replica set, the polling update of {@link Main} can be used otherwise.
+ */
+public class ChangeStreamUpdate {
+    private static final String PATH_TO_RESUME_TOKEN = "resumeToken.json";
+    /**
+     * The maximum amount of logs updated at once.
+     */
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    /**
+     * The maximum time in milliseconds a log waits for further logs before its batch is updated.
+     */
+    private static final long DEFAULT_MAX_WAIT = 1000;
+    /**
+     * The interval after which the cached deployments of the metadata DB are reloaded.
+     */
+    private static final long CACHE_REFRESH_INTERVAL = TimeUnit.HOURS.toMillis(1);
+    /**
+     * The time in milliseconds to wait before the change stream is reopened after an error.
+     */
+    private static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(10);
+
+    private final Path resumeTokenPath;
+    private final int batchSize;
+    private final long maxWait;
+    private volatile boolean running = true;
+
+    public ChangeStreamUpdate(Path resumeTokenPath, int batchSize, long maxWait) {
+        this.resumeTokenPath = resumeTokenPath;
+        this.batchSize = batchSize;
+        this.maxWait = maxWait;
+    }
+
+    public static void main(String[] args) {
+        int batchSize = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_BATCH_SIZE;
+        long maxWait = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_MAX_WAIT;
+        ChangeStreamUpdate update = new ChangeStreamUpdate(Paths.get(PATH_TO_RESUME_TOKEN), batchSize, maxWait);
+        Thread mainThread = Thread.currentThread();
+        // finish the current batch before exiting
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            update.stop();
+            try {
+                mainThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        update.run();
+    }
+
+    /**
+     * Updates the metadata DB with all logs inserted since the stored resume token until {@link #stop()} is called.
+     * <p>
+     * All logs that are not done yet are updated once after opening the change stream, so logs missed while the
+     * stream was not running are updated as well. Every batch only updates the logs that are still not done.
+     * <p>
+     * Must not run at the same time as the polling update or another instance: the logs are only marked as done after
+     * the metadata DB was updated, so two updates may both count the same logs.
+     */
+    public void run() {
+        MariaDBAccess.setPrint(false);
+        BsonDocument resumeToken = readResumeToken();
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor =
+                         MongoDBAccess.watchNewEntries(resumeToken).cursor()) {
+                // catch up with the logs inserted before the change stream was opened
+                Cronjob.update(UpdateMode.AGGREGATED, 1);
+                long cacheLoaded = System.currentTimeMillis();
+
+                while (running) {
+                    List<ObjectId> ids = nextBatch(cursor);
+                    if (System.currentTimeMillis() - cacheLoaded > CACHE_REFRESH_INTERVAL) {
+                        MariaDBAccess.clearCache();
+                        cacheLoaded = System.currentTimeMillis();
+                    }
+                    if (!ids.isEmpty()) {
+                        // functions deployed since the last batch would be skipped for good otherwise
+                        MariaDBAccess.clearDeploymentMisses();
+                        MariaDBAccess.resetCounters();
+                        MariaDBAccess.updateAggregated(MongoDBAccess.findNewUpdateEntries(ids));
+                        MariaDBAccess.flushSketches();
+                        System.out.println("Updated: " + MariaDBAccess.getUpdated() + ", Skipped: "
+                                + MariaDBAccess.getSkipped());
+                    }
+                    if (cursor.getResumeToken() != null) {
+                        resumeToken = cursor.getResumeToken();
+                        writeResumeToken(resumeToken);
+                    }
+                }
+            } catch (RuntimeException e) {
+                // e.g. a MongoException or a failed update of the metadata DB, which must not stop the update
+                e.printStackTrace();
+                // the resume token may no longer be available, the catch up updates the missed logs instead
+                resumeToken = null;
+                try {
+                    Thread.sleep(RETRY_DELAY);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    running = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the update after the current batch.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * Collects the ids of inserted logs until the batch is full or the first log waited for the maximum time.
+     *
+     * @param cursor of the change stream
+     *
+     * @return the ids of the inserted logs
+     */
+    private List<ObjectId> nextBatch(MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor) {
+        List<ObjectId> ids = new ArrayList<>();
+        long deadline = Long.MAX_VALUE;
+        while (running && ids.size() < batchSize && System.currentTimeMillis() < deadline) {
+            ChangeStreamDocument<Document> event = cursor.tryNext();
+            if (event == null) {
+                if (!ids.isEmpty()) {
+                    break;
+                }
+                continue;
+            }
+            ids.add(event.getDocumentKey().getObjectId("_id").getValue());
+            if (ids.size() == 1) {
+                deadline = System.currentTimeMillis() + maxWait;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Reads the stored resume token.
+     *
+     * @return the resume token, null if there is none
+     */
+    private BsonDocument readResumeToken() {
+        if (!Files.exists(resumeTokenPath)) {
+            return null;
+        }
+        try {
+            return BsonDocument.parse(new String(Files.readAllBytes(resumeTokenPath), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Stores the given resume token, replacing the previous one atomically.
+     *
+     * @param resumeToken to store
+     */
+    private void writeResumeToken(BsonDocument resumeToken) {
+        try {
+            Path tmp = resumeTokenPath.resolveSibling(resumeTokenPath.getFileName() + ".tmp");
+            Files.write(tmp, resumeToken.toJson().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, resumeTokenPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -2,6 +2,9 @@ package at.uibk.dps.cronjob;
 
 import at.uibk.dps.databases.MariaDBAccess;
 import at.uibk.dps.databases.MongoDBAccess;
+import at.uibk.dps.databases.UpdateEntry;
+import at.uibk.dps.metrics.Metrics;
+import at.uibk.dps.util.UpdateMode;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -9,6 +12,28 @@ import java.util.TimerTask;
 
 public class Cronjob extends TimerTask {
 
+    /**
+     * The mode used to update the metadata DB.
+     */
+    private final UpdateMode mode;
+    /**
+     * The amount of threads used by {@link UpdateMode#PARALLEL} and {@link UpdateMode#ATOMIC}.
+     */
+    private final int threads;
+
+    public Cronjob() {
+        this(UpdateMode.SEQUENTIAL);
+    }
+
+    public Cronjob(UpdateMode mode) {
+        this(mode, Runtime.getRuntime().availableProcessors());
+    }
+
+    public Cronjob(UpdateMode mode, int threads) {
+        this.mode = mode;
+        this.threads = threads;
+    }
+
     /**
      * Updates all undone logs in the metadata DB and updates its 'done'-field.
      */
@@ -16,7 +41,7 @@ public class Cronjob extends TimerTask {
     public void run() {
         MariaDBAccess.resetCounters();
         MariaDBAccess.setPrint(true);
-        MongoDBAccess.findNewEntries().forEach(MariaDBAccess.updateMD);
+        update(mode, threads);
 
         DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
         LocalDateTime now = LocalDateTime.now();
@@ -28,4 +53,72 @@ public class Cronjob extends TimerTask {
         System.out.printf("%-60s#\n", info);
         System.out.println("#############################################################");
     }
+
+    /**
+     * Updates all undone logs in the metadata DB with the given mode.
+     *
+     * @param mode    the mode used to update the metadata DB
+     * @param threads the amount of threads used by {@link UpdateMode#PARALLEL} and {@link UpdateMode#ATOMIC}
+     */
+    static void update(UpdateMode mode, int threads) {
+        long start = System.nanoTime();
+        // the logs of the last run whose 'done'-fields could not be written would be updated twice
+        if (!MongoDBAccess.flushDone()) {
+            System.out.println("Logs of the last run could not be marked as done. Skipped.");
+            return;
+        }
+        Metrics.set("cronjob.backlog", MongoDBAccess.countNewEntries());
+        MariaDBAccess.clearCache();
+        switch (mode) {
+            case AGGREGATED:
+                MariaDBAccess.updateAggregated(MongoDBAccess.findNewUpdateEntries());
+                break;
+            case PARALLEL:
+                MariaDBAccess.updateParallel(MongoDBAccess.findNewUpdateEntries(), threads);
+                break;
+            case ATOMIC:
+                MariaDBAccess.updateAtomic(MongoDBAccess.findNewUpdateEntries(), threads);
+                break;
+            case BATCHED:
+                MariaDBAccess.updateBatched(MongoDBAccess.findNewUpdateEntries());
+                break;
+            case SEQUENTIAL:
+            default:
+                for (UpdateEntry log : MongoDBAccess.findNewUpdateEntries()) {
+                    MariaDBAccess.update(log);
+                }
+                break;
+        }
+        MongoDBAccess.flushDone();
+        MariaDBAccess.flushSketches();
+        Metrics.recordLatency("cronjob.update." + mode.toString().toLowerCase(), start);
+    }
+
+    /**
+     * Parses the update mode from the given program arguments.
+     *
+     * @param args the program arguments
+     *
+     * @return the given mode, {@link UpdateMode#SEQUENTIAL} if none is given
+     */
+    static UpdateMode parseMode(String[] args) {
+        if (args.length > 0) {
+            return UpdateMode.valueOf(args[0].toUpperCase());
+        }
+        return UpdateMode.SEQUENTIAL;
+    }
+
+    /**
+     * Parses the amount of threads from the given program arguments.
+     *
+     * @param args the program arguments
+     *
+     * @return the given amount of threads, the amount of available processors if none is given
+     */
+    static int parseThreads(String[] args) {
+        if (args.length > 1) {
+            return Integer.parseInt(args[1]);
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
 }
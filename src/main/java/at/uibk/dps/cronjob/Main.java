@@ -6,7 +6,7 @@ import java.util.concurrent.TimeUnit;
 public class Main {
     public static void main(String[] args) {
         Timer t = new Timer();
-        Cronjob cronjob = new Cronjob();
+        Cronjob cronjob = new Cronjob(Cronjob.parseMode(args), Cronjob.parseThreads(args));
         // run the update every hour
         t.scheduleAtFixedRate(cronjob, 0, TimeUnit.HOURS.toMillis(1));
     }
@@ -1,7 +1,6 @@
 package at.uibk.dps.cronjob;
 
 import at.uibk.dps.databases.MariaDBAccess;
-import at.uibk.dps.databases.MongoDBAccess;
 
 /**
  * Class to manually run the update of the metadata database.
@@ -10,6 +9,6 @@ public class ManualUpdate {
     public static void main(String[] args) {
         MariaDBAccess.resetCounters();
         MariaDBAccess.setPrint(false);
-        MongoDBAccess.findNewEntries().forEach(MariaDBAccess.updateMD);
+        Cronjob.update(Cronjob.parseMode(args), Cronjob.parseThreads(args));
     }
 }
@@ -0,0 +1,52 @@
+package at.uibk.dps.databases;
+
+import at.uibk.dps.util.Event;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the end times of the functions executed within the current parallelFor loop that have not been used as start
+ * time yet. Is used to determine the start time of functions over the maximum concurrency limit.
+ */
+class ConcurrencySlots {
+    /**
+     * The unused end times per function id, the earliest end time first.
+     */
+    private final Map<String, PriorityQueue<Long>> endTimes = new HashMap<>();
+
+    /**
+     * Adds the end time of a log entry. A PARALLEL_FOR_END event discards all end times of the finished parallelFor.
+     *
+     * @param event       of the log entry
+     * @param functionId  of the log entry
+     * @param loopCounter of the log entry, -1 if it was not executed within a parallelFor loop
+     * @param endTime     of the log entry
+     */
+    synchronized void add(Event event, String functionId, int loopCounter, long endTime) {
+        if (event == Event.PARALLEL_FOR_END) {
+            endTimes.clear();
+        } else if (functionId != null && loopCounter != -1) {
+            endTimes.computeIfAbsent(functionId, k -> new PriorityQueue<>()).add(endTime);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Removes the earliest unused end time of the given function, waits until there is one.
+     *
+     * @param functionId to get the end time for
+     *
+     * @return the earliest unused end time
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized long take(String functionId) throws InterruptedException {
+        PriorityQueue<Long> functionEndTimes;
+        while ((functionEndTimes = endTimes.get(functionId)) == null || functionEndTimes.isEmpty()) {
+            wait();
+        }
+        return functionEndTimes.poll();
+    }
+}
@@ -0,0 +1,184 @@
+package at.uibk.dps.databases;
+
+import at.uibk.dps.util.Provider;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Calculates the cost of function executions with the prices of the provider table of the metadata DB. The prices are
+ * read once and read again when they are older than the refresh interval, so calculating a cost involves no query.
+ * If the prices cannot be read again, the old ones are kept.
+ */
+public final class CostModel {
+    /**
+     * The memory sizes in MB at which the next CPU tier of Google Cloud Functions starts, see
+     * https://cloud.google.com/functions/pricing.
+     */
+    private static final int[] GOOGLE_MEMORY_TIERS = {256, 512, 1024, 2048, 4096};
+    /**
+     * The clock rate in MHz of each CPU tier of Google Cloud Functions, one more than {@link #GOOGLE_MEMORY_TIERS}.
+     */
+    private static final int[] GOOGLE_MHZ = {200, 400, 800, 1400, 2400, 4800};
+
+    /**
+     * The time in nanoseconds after which the prices are read again, negative if they are never read again.
+     */
+    private final long refreshInterval;
+    private volatile Map<Provider, ProviderPrice> prices;
+    private volatile long loadedAt;
+
+    /**
+     * Creates a cost model that reads the prices from the metadata DB on first use.
+     *
+     * @param refreshInterval the time in milliseconds after which the prices are read again
+     */
+    public CostModel(long refreshInterval) {
+        this.refreshInterval = refreshInterval * 1_000_000;
+    }
+
+    /**
+     * Creates a cost model with fixed prices, e.g. for what-if evaluations with other prices.
+     *
+     * @param prices the prices per provider
+     */
+    CostModel(Map<Provider, ProviderPrice> prices) {
+        this.refreshInterval = -1;
+        Map<Provider, ProviderPrice> copy = new EnumMap<>(Provider.class);
+        copy.putAll(prices);
+        this.prices = Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * Calculates the cost for the given parameters, like {@link MariaDBAccess#calculateCost(int, double, Provider)}.
+     *
+     * @param memorySize to calculate
+     * @param runtime    to calculate
+     * @param provider   to calculate
+     *
+     * @return the cost, -1 if there are no prices for the provider
+     */
+    public double calculateCost(int memorySize, double runtime, Provider provider) {
+        ProviderPrice price = getPrices().get(provider);
+        return price == null ? -1 : calculateCost(memorySize, runtime, provider, price);
+    }
+
+    /**
+     * Calculates the costs for the given memory sizes and runtimes of a provider into the given array. The prices are
+     * looked up once for all elements and no objects are created per element.
+     *
+     * @param provider    to calculate
+     * @param memorySizes to calculate
+     * @param runtimes    to calculate, one per memory size
+     * @param costs       to write the costs to, one per memory size, -1 if there are no prices for the provider
+     *
+     * @throws IllegalArgumentException if the arrays differ in length
+     */
+    public void calculateCosts(Provider provider, int[] memorySizes, double[] runtimes, double[] costs) {
+        if (runtimes.length != memorySizes.length || costs.length != memorySizes.length) {
+            throw new IllegalArgumentException("Expected " + memorySizes.length + " runtimes and costs, got "
+                    + runtimes.length + " runtimes and " + costs.length + " costs.");
+        }
+        ProviderPrice price = getPrices().get(provider);
+        for (int i = 0; i < memorySizes.length; i++) {
+            costs[i] = price == null ? -1 : calculateCost(memorySizes[i], runtimes[i], provider, price);
+        }
+    }
+
+    /**
+     * Calculates the costs for the given memory sizes and runtimes of a provider.
+     *
+     * @param provider    to calculate
+     * @param memorySizes to calculate
+     * @param runtimes    to calculate, one per memory size
+     *
+     * @return the costs, one per memory size, -1 if there are no prices for the provider
+     *
+     * @throws IllegalArgumentException if the arrays differ in length
+     */
+    public double[] calculateCosts(Provider provider, int[] memorySizes, double[] runtimes) {
+        double[] costs = new double[memorySizes.length];
+        calculateCosts(provider, memorySizes, runtimes, costs);
+        return costs;
+    }
+
+    /**
+     * Reads the prices from the metadata DB, the old prices are kept if they cannot be read.
+     *
+     * @return true if the prices were read
+     */
+    public boolean refresh() {
+        if (refreshInterval < 0) {
+            return false;
+        }
+        // set before reading, so the other threads keep using the old prices instead of reading as well
+        loadedAt = System.nanoTime();
+        try {
+            prices = Collections.unmodifiableMap(MariaDBAccess.readProviderPrices());
+            return true;
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+            if (prices == null) {
+                // no costs until the next refresh instead of a query per calculation
+                prices = Collections.emptyMap();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the prices, reads them if they were not read yet or if they are older than the refresh interval.
+     *
+     * @return the prices per provider
+     */
+    private Map<Provider, ProviderPrice> getPrices() {
+        Map<Provider, ProviderPrice> current = prices;
+        if (current == null || refreshInterval >= 0 && System.nanoTime() - loadedAt > refreshInterval) {
+            synchronized (this) {
+                if (prices == current) {
+                    refresh();
+                }
+            }
+            current = prices;
+        }
+        return current == null ? Collections.emptyMap() : current;
+    }
+
+    /**
+     * Calculates the cost for the given parameters with the given prices.
+     *
+     * @param memorySize to calculate
+     * @param runtime    to calculate
+     * @param provider   to calculate
+     * @param price      the prices of the provider
+     *
+     * @return the cost
+     */
+    static double calculateCost(int memorySize, double runtime, Provider provider, ProviderPrice price) {
+        int roundTo = price.getUnitTimems();
+        runtime = ((runtime + roundTo - 1) / roundTo) * roundTo;
+
+        // fixed invocationCost + allocated memory size in GB * function runtime in sec * GBps cost
+        double result = price.getInvocationCost() + (((memorySize / 1000.0) * (runtime / 1000)) * price.getDurationGBpsCost());
+
+        if (provider == Provider.GOOGLE) {
+            result += ((getGoogleMhz(memorySize) / 1000.0) * (runtime / 1000)) * price.getDurationGHzpsCost();
+        }
+        return result;
+    }
+
+    /**
+     * @param memorySize of the function in MB
+     *
+     * @return the clock rate in MHz Google Cloud Functions allocates for the given memory size
+     */
+    static int getGoogleMhz(int memorySize) {
+        int tier = 0;
+        while (tier < GOOGLE_MEMORY_TIERS.length && memorySize >= GOOGLE_MEMORY_TIERS[tier]) {
+            tier++;
+        }
+        return GOOGLE_MHZ[tier];
+    }
+}
@@ -0,0 +1,134 @@
+package at.uibk.dps.databases;
+
+import java.util.*;
+
+/**
+ * Index of the cpu table of the metadata DB by provider, region and parallel. The entries of each combination are
+ * sorted by from_percentage, so the entries whose range [from_percentage, to_percentage) contains a percentage are
+ * found with a binary search.
+ */
+final class CpuIndex {
+    /**
+     * The groups by provider id and parallel, then by region id.
+     */
+    private final Map<Long, Map<Integer, Group>> groups = new HashMap<>();
+
+    /**
+     * Indexes the given entries of the cpu table.
+     *
+     * @param cpus all entries of the cpu table
+     */
+    CpuIndex(List<MetadataRow> cpus) {
+        Map<Long, Map<Integer, List<MetadataRow>>> rows = new HashMap<>();
+        for (MetadataRow cpu : cpus) {
+            rows.computeIfAbsent(key(cpu.getInt("provider"), cpu.getInt("parallel")), k -> new LinkedHashMap<>())
+                    .computeIfAbsent(cpu.getInt("region"), k -> new ArrayList<>()).add(cpu);
+        }
+        for (Map.Entry<Long, Map<Integer, List<MetadataRow>>> byRegion : rows.entrySet()) {
+            Map<Integer, Group> regions = new LinkedHashMap<>();
+            for (Map.Entry<Integer, List<MetadataRow>> region : byRegion.getValue().entrySet()) {
+                regions.put(region.getKey(), new Group(region.getValue()));
+            }
+            groups.put(byRegion.getKey(), regions);
+        }
+    }
+
+    /**
+     * Finds the entries of the given provider in all regions whose range contains the given percentage.
+     *
+     * @param providerId the id of the provider entry
+     * @param parallel   to find
+     * @param percentage to find
+     *
+     * @return the entries, empty if there are none
+     */
+    List<MetadataRow> find(int providerId, int parallel, int percentage) {
+        Map<Integer, Group> regions = groups.get(key(providerId, parallel));
+        if (regions == null) {
+            return Collections.emptyList();
+        }
+        List<MetadataRow> result = new ArrayList<>();
+        for (Group group : regions.values()) {
+            group.collect(percentage, result);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the entries of the given provider and region whose range contains the given percentage.
+     *
+     * @param providerId the id of the provider entry
+     * @param regionId   the id of the region entry
+     * @param parallel   to find
+     * @param percentage to find
+     *
+     * @return the entries, empty if there are none
+     */
+    List<MetadataRow> find(int providerId, int regionId, int parallel, int percentage) {
+        Map<Integer, Group> regions = groups.get(key(providerId, parallel));
+        Group group = regions == null ? null : regions.get(regionId);
+        if (group == null) {
+            return Collections.emptyList();
+        }
+        List<MetadataRow> result = new ArrayList<>(1);
+        group.collect(percentage, result);
+        return result;
+    }
+
+    private static long key(int providerId, int parallel) {
+        return ((long) providerId << 32) | (parallel & 0xffffffffL);
+    }
+
+    /**
+     * The entries of one provider, region and parallel, sorted by from_percentage.
+     */
+    private static final class Group {
+        private final MetadataRow[] rows;
+        private final double[] from;
+        private final double[] to;
+        /**
+         * The maximum to_percentage of all entries up to each index, so overlapping ranges are found as well.
+         */
+        private final double[] maxTo;
+
+        Group(List<MetadataRow> entries) {
+            rows = entries.toArray(new MetadataRow[0]);
+            Arrays.sort(rows, Comparator.comparingDouble(row -> row.getDouble("from_percentage")));
+            from = new double[rows.length];
+            to = new double[rows.length];
+            maxTo = new double[rows.length];
+            for (int i = 0; i < rows.length; i++) {
+                from[i] = rows[i].getDouble("from_percentage");
+                to[i] = rows[i].getDouble("to_percentage");
+                maxTo[i] = i == 0 ? to[i] : Math.max(maxTo[i - 1], to[i]);
+            }
+        }
+
+        /**
+         * Adds the entries whose range contains the given percentage to the given list, sorted by from_percentage.
+         *
+         * @param percentage to find
+         * @param result     to add the entries to
+         */
+        void collect(double percentage, List<MetadataRow> result) {
+            // the last entry starting at or before the percentage
+            int low = 0;
+            int high = from.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (from[middle] <= percentage) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            int first = result.size();
+            for (int i = high; i >= 0 && maxTo[i] > percentage; i--) {
+                if (to[i] > percentage) {
+                    result.add(rows[i]);
+                }
+            }
+            Collections.reverse(result.subList(first, result.size()));
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package at.uibk.dps.databases;
+
+/**
+ * The ids of a functiondeployment entry that are required to update the metadata DB.
+ */
+class DeploymentInfo {
+    private final int memorySize;
+    private final int functionImplementationId;
+    private final int functionTypeId;
+
+    DeploymentInfo(int memorySize, int functionImplementationId, int functionTypeId) {
+        this.memorySize = memorySize;
+        this.functionImplementationId = functionImplementationId;
+        this.functionTypeId = functionTypeId;
+    }
+
+    int getMemorySize() {
+        return memorySize;
+    }
+
+    int getFunctionImplementationId() {
+        return functionImplementationId;
+    }
+
+    int getFunctionTypeId() {
+        return functionTypeId;
+    }
+}
@@ -0,0 +1,79 @@
+package at.uibk.dps.databases;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the latest end time of the log entries of a workflow execution, in total and separately for functions
+ * executed within and outside of a parallelFor loop.
+ */
+class EndTimeIndex {
+    /**
+     * Marks that no end time was added yet.
+     */
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final AtomicLong overall = new AtomicLong(NONE);
+    private final AtomicLong outOfLoop = new AtomicLong(NONE);
+    private final AtomicLong inLoop = new AtomicLong(NONE);
+
+    /**
+     * Adds the end time of a log entry.
+     *
+     * @param loopCounter the loop counter of the log entry, -1 if it was not executed within a parallelFor loop
+     * @param endTime     the end time of the log entry
+     */
+    void add(int loopCounter, long endTime) {
+        max(overall, endTime);
+        if (loopCounter == -1) {
+            max(outOfLoop, endTime);
+        } else {
+            max(inLoop, endTime);
+        }
+    }
+
+    /**
+     * @return the latest end time of all log entries
+     *
+     * @throws NoSuchElementException if no log entry was added
+     */
+    long getOverall() {
+        return get(overall);
+    }
+
+    /**
+     * @return the latest end time of the log entries outside of a parallelFor loop
+     *
+     * @throws NoSuchElementException if no such log entry was added
+     */
+    long getOutOfLoop() {
+        return get(outOfLoop);
+    }
+
+    /**
+     * @return the latest end time of the log entries within a parallelFor loop
+     *
+     * @throws NoSuchElementException if no such log entry was added
+     */
+    long getInLoop() {
+        return get(inLoop);
+    }
+
+    private static long get(AtomicLong endTime) {
+        long value = endTime.get();
+        if (value == NONE) {
+            throw new NoSuchElementException("No value present");
+        }
+        return value;
+    }
+
+    /**
+     * Sets the given end time to the given value if it is later, without writing otherwise.
+     */
+    private static void max(AtomicLong endTime, long value) {
+        long current;
+        while ((current = endTime.get()) < value && !endTime.compareAndSet(current, value)) {
+            // retry with the concurrently updated value
+        }
+    }
+}
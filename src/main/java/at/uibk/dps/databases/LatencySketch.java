@@ -0,0 +1,216 @@
+package at.uibk.dps.databases;
+
+import at.uibk.dps.metrics.LogLinearBuckets;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Mergeable distribution of the round trip times of a functiondeployment, functionimplementation or functiontype
+ * entry, which provides tail latencies like the 95th or 99th percentile. The values are counted in log-linear buckets
+ * like {@link at.uibk.dps.metrics.Histogram}, but every power of two is split into 16 buckets, so a quantile is at
+ * most 6.25% above the actual value. The amount of buckets is fixed, so a sketch needs the same memory no matter how
+ * many values it counts, and two sketches are merged by adding their buckets.
+ * <p>
+ * A sketch is stored as byte array containing only the non-empty buckets, see {@link #toBytes()}.
+ */
+public final class LatencySketch {
+    private static final byte VERSION = 1;
+    /**
+     * 16 buckets per power of two. Changing them changes the serialized sketches, which requires a new version.
+     */
+    private static final LogLinearBuckets BUCKET_LAYOUT = new LogLinearBuckets(4);
+    /**
+     * The largest value that is counted, larger values are counted as this value.
+     */
+    private static final long MAX_VALUE = Integer.MAX_VALUE;
+    private static final int BUCKETS = BUCKET_LAYOUT.size(MAX_VALUE);
+
+    private final long[] buckets = new long[BUCKETS];
+    private long count;
+    private long min;
+    private long max;
+
+    /**
+     * Adds the given value, negative values are added as 0.
+     *
+     * @param value to add
+     */
+    public synchronized void add(long value) {
+        long added = Math.min(Math.max(0, value), MAX_VALUE);
+        buckets[BUCKET_LAYOUT.index(added)]++;
+        if (count == 0 || added < min) {
+            min = added;
+        }
+        if (count == 0 || added > max) {
+            max = added;
+        }
+        count++;
+    }
+
+    /**
+     * Adds all values of the given sketch to this sketch.
+     *
+     * @param other the sketch to add
+     *
+     * @return this sketch
+     */
+    public LatencySketch merge(LatencySketch other) {
+        long[] otherBuckets;
+        long otherCount;
+        long otherMin;
+        long otherMax;
+        // copy first, so the two sketches are never locked at the same time
+        synchronized (other) {
+            otherBuckets = other.buckets.clone();
+            otherCount = other.count;
+            otherMin = other.min;
+            otherMax = other.max;
+        }
+        if (otherCount == 0) {
+            return this;
+        }
+        synchronized (this) {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] += otherBuckets[i];
+            }
+            if (count == 0 || otherMin < min) {
+                min = otherMin;
+            }
+            if (count == 0 || otherMax > max) {
+                max = otherMax;
+            }
+            count += otherCount;
+        }
+        return this;
+    }
+
+    /**
+     * Gets the value below which the given fraction of the added values lies.
+     *
+     * @param quantile between 0 and 1, e.g. 0.99 for the 99th percentile
+     *
+     * @return the upper bound of the bucket containing the quantile, 0 if nothing was added
+     */
+    public synchronized long getQuantile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min(BUCKET_LAYOUT.upperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return the amount of added values
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the smallest added value, 0 if nothing was added
+     */
+    public synchronized long getMin() {
+        return min;
+    }
+
+    /**
+     * @return the largest added value, 0 if nothing was added
+     */
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /**
+     * Serializes the sketch as version, minimum, maximum and amount of non-empty buckets, followed by the distance to
+     * the previous non-empty bucket and the count of each non-empty bucket, all as variable-length integers.
+     *
+     * @return the serialized sketch
+     */
+    public synchronized byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(VERSION);
+        writeVarLong(bytes, min);
+        writeVarLong(bytes, max);
+        int nonEmpty = 0;
+        for (long bucket : buckets) {
+            if (bucket != 0) {
+                nonEmpty++;
+            }
+        }
+        writeVarLong(bytes, nonEmpty);
+        int previous = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (buckets[i] != 0) {
+                writeVarLong(bytes, i - previous);
+                writeVarLong(bytes, buckets[i]);
+                previous = i;
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deserializes a sketch written by {@link #toBytes()}.
+     *
+     * @param bytes the serialized sketch, null or empty for an empty sketch
+     *
+     * @return the sketch
+     *
+     * @throws IllegalArgumentException if the bytes are not a serialized sketch
+     */
+    public static LatencySketch fromBytes(byte[] bytes) {
+        LatencySketch sketch = new LatencySketch();
+        if (bytes == null || bytes.length == 0) {
+            return sketch;
+        }
+        if (bytes[0] != VERSION) {
+            throw new IllegalArgumentException("Unknown sketch version " + bytes[0] + ".");
+        }
+        int[] position = {1};
+        try {
+            sketch.min = readVarLong(bytes, position);
+            sketch.max = readVarLong(bytes, position);
+            long nonEmpty = readVarLong(bytes, position);
+            long index = 0;
+            for (long i = 0; i < nonEmpty; i++) {
+                index += readVarLong(bytes, position);
+                long bucket = readVarLong(bytes, position);
+                if (index >= BUCKETS) {
+                    throw new IllegalArgumentException("Bucket " + index + " is out of range.");
+                }
+                sketch.buckets[(int) index] = bucket;
+                sketch.count += bucket;
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("The sketch is truncated.", e);
+        }
+        return sketch;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream bytes, long value) {
+        while ((value & ~0x7FL) != 0) {
+            bytes.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes.write((int) value);
+    }
+
+    private static long readVarLong(byte[] bytes, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
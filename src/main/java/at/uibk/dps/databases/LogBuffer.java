@@ -0,0 +1,101 @@
+package at.uibk.dps.databases;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buffers the log entries of a workflow execution without locking.
+ * <p>
+ * The log entries are appended to one of several lock-free queues, chosen by the appending thread, so concurrent
+ * threads rarely compete for the same queue. Every log entry gets a sequence number, which restores the order in which
+ * the log entries were added when taking a snapshot.
+ */
+class LogBuffer {
+    private final ConcurrentLinkedQueue<LogRecord>[] stripes;
+    private final AtomicLong sequence = new AtomicLong();
+    /**
+     * The stripe from which the next log entry is drained.
+     */
+    private int drainStripe;
+    /**
+     * The amount of drained log entries.
+     */
+    private volatile long drained;
+
+    @SuppressWarnings("unchecked")
+    LogBuffer() {
+        int stripeCount = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 4) - 1) << 1;
+        stripes = new ConcurrentLinkedQueue[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * Appends the given log entry.
+     *
+     * @param log to append
+     */
+    void add(LogRecord log) {
+        log.sequence = sequence.getAndIncrement();
+        stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)].offer(log);
+    }
+
+    /**
+     * @return the amount of log entries added so far, including the drained ones
+     */
+    long count() {
+        return sequence.get();
+    }
+
+    /**
+     * @return the amount of log entries in the buffer
+     */
+    long size() {
+        return sequence.get() - drained;
+    }
+
+    /**
+     * Takes a snapshot of the buffered log entries, in the order they were added.
+     *
+     * @return the buffered log entries
+     */
+    List<LogRecord> snapshot() {
+        List<LogRecord> logs = new ArrayList<>();
+        for (Collection<LogRecord> stripe : stripes) {
+            logs.addAll(stripe);
+        }
+        logs.sort(Comparator.comparingLong(log -> log.sequence));
+        return logs;
+    }
+
+    /**
+     * Removes up to the given amount of log entries from the buffer. May only be called by a single thread.
+     *
+     * @param logs       the list to add the removed log entries to
+     * @param maxEntries the maximum amount of log entries to remove
+     *
+     * @return the amount of removed log entries
+     */
+    int drainTo(List<LogRecord> logs, int maxEntries) {
+        int removed = 0;
+        int emptyStripes = 0;
+        while (removed < maxEntries && emptyStripes < stripes.length) {
+            LogRecord log = stripes[drainStripe].poll();
+            if (log == null) {
+                emptyStripes++;
+                drainStripe = (drainStripe + 1) & (stripes.length - 1);
+            } else {
+                logs.add(log);
+                removed++;
+                emptyStripes = 0;
+            }
+        }
+        drained += removed;
+        return removed;
+    }
+}
@@ -0,0 +1,219 @@
+package at.uibk.dps.databases;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the log entries to the mongo database in batches from a background thread while the workflow is running.
+ * Written log entries are removed from the buffer.
+ * <p>
+ * A batch is written as soon as it is full or its oldest entry reached the maximum age. If too many entries are
+ * pending, because the mongo database falls behind, adding further entries blocks until a batch was written.
+ */
+class LogFlusher {
+    /**
+     * The time in milliseconds to wait before a failed batch is written again.
+     */
+    private static final long RETRY_DELAY = 1000;
+    /**
+     * The amount of attempts to write a batch after the flusher was closed before the batch is dropped.
+     */
+    private static final int ATTEMPTS_AFTER_CLOSE = 3;
+
+    private final LogBuffer entries;
+    private final int batchSize;
+    private final long maxAge;
+    private final int maxPending;
+    private final Thread thread;
+    /**
+     * The amount of entries removed from the buffer, only changed by the background thread.
+     */
+    private volatile long taken;
+    /**
+     * The amount of entries written to the mongo database, only changed by the background thread.
+     */
+    private volatile long written;
+    /**
+     * The time when the oldest entry in the buffer was added, 0 if the buffer was empty after the last batch.
+     */
+    private final AtomicLong oldestPending = new AtomicLong();
+    private volatile boolean running = true;
+    /**
+     * Whether the background thread waits for entries, so adding an entry only locks if it has to wake it up.
+     */
+    private volatile boolean waiting;
+    /**
+     * The amount of threads waiting for all entries to be written.
+     */
+    private int flushing;
+
+    /**
+     * Starts a background thread writing the entries of the given buffer.
+     *
+     * @param entries    the buffer of log entries
+     * @param batchSize  the maximum amount of entries written at once
+     * @param maxAge     the maximum time in milliseconds an entry waits for its batch to be full
+     * @param maxPending the maximum amount of pending entries before adding further entries blocks
+     */
+    LogFlusher(LogBuffer entries, int batchSize, long maxAge, int maxPending) {
+        this.entries = entries;
+        this.batchSize = batchSize;
+        this.maxAge = maxAge;
+        this.maxPending = Math.max(maxPending, batchSize);
+        this.thread = new Thread(this::run, "log-flusher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Has to be called after an entry was added to the buffer. Blocks while the maximum amount of entries is pending.
+     * Only locks to wake up the background thread or to wait, so concurrent workflows do not compete for the flusher.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void added() throws InterruptedException {
+        // only the first entry added to an empty buffer sets the time
+        boolean first = oldestPending.get() == 0 && oldestPending.compareAndSet(0, System.currentTimeMillis());
+        if ((first || buffered() >= batchSize) && waiting) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+        if (running && pending() >= maxPending) {
+            synchronized (this) {
+                while (running && pending() >= maxPending) {
+                    wait();
+                }
+            }
+        }
+    }
+
+    /**
+     * Blocks until all entries added so far are written to the mongo database.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized void flush() throws InterruptedException {
+        long target = entries.count();
+        flushing++;
+        notifyAll();
+        try {
+            while (thread.isAlive() && written < target) {
+                wait();
+            }
+        } finally {
+            flushing--;
+        }
+    }
+
+    /**
+     * Writes all pending entries and stops the background thread.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void close() throws InterruptedException {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        thread.join();
+    }
+
+    /**
+     * @return the amount of entries in the buffer
+     */
+    private long buffered() {
+        return entries.count() - taken;
+    }
+
+    /**
+     * @return the amount of entries not written to the mongo database yet
+     */
+    private long pending() {
+        return entries.count() - written;
+    }
+
+    /**
+     * Writes the batches until the flusher is closed and all entries are written.
+     */
+    private void run() {
+        try {
+            while (true) {
+                List<LogRecord> batch = new ArrayList<>();
+                synchronized (this) {
+                    // set before checking the buffer, so an entry added after the check always wakes this thread
+                    waiting = true;
+                    try {
+                        while (!isDue()) {
+                            if (!running && buffered() == 0) {
+                                return;
+                            }
+                            if (buffered() == 0) {
+                                wait();
+                            } else {
+                                wait(Math.max(1, oldestPending.get() + maxAge - System.currentTimeMillis()));
+                            }
+                        }
+                    } finally {
+                        waiting = false;
+                    }
+                    // entries being added may already be counted but not yet in the buffer
+                    if (entries.drainTo(batch, batchSize) == 0) {
+                        wait(1);
+                        continue;
+                    }
+                    taken += batch.size();
+                }
+                write(batch);
+                synchronized (this) {
+                    written += batch.size();
+                    // the remaining entries are timed from now, the next entry added to an empty buffer sets the time
+                    oldestPending.set(buffered() == 0 ? 0 : System.currentTimeMillis());
+                    notifyAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Checks whether a batch has to be written now.
+     *
+     * @return true if a batch is full, its oldest entry reached the maximum age, a thread waits for all entries to be
+     * written or the flusher is closing, false otherwise
+     */
+    private boolean isDue() {
+        long buffered = buffered();
+        return buffered >= batchSize || (buffered > 0 && (!running || flushing > 0
+                || System.currentTimeMillis() - oldestPending.get() >= maxAge));
+    }
+
+    /**
+     * Writes the given batch to the mongo database, retries until it succeeds. After the flusher was closed, the batch
+     * is dropped if it cannot be written within a few attempts.
+     *
+     * @param batch to write
+     *
+     * @throws InterruptedException if interrupted while waiting for a retry
+     */
+    private void write(List<LogRecord> batch) throws InterruptedException {
+        int attemptsAfterClose = 0;
+        while (true) {
+            try {
+                MongoDBAccess.insertEntries(batch);
+                return;
+            } catch (Exception e) {
+                e.printStackTrace();
+                synchronized (this) {
+                    if (!running && ++attemptsAfterClose >= ATTEMPTS_AFTER_CLOSE) {
+                        System.err.println("Dropped " + batch.size() + " log entries.");
+                        return;
+                    }
+                }
+                Thread.sleep(RETRY_DELAY);
+            }
+        }
+    }
+}
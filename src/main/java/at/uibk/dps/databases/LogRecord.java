@@ -0,0 +1,105 @@
+package at.uibk.dps.databases;
+
+import at.uibk.dps.util.Event;
+import at.uibk.dps.util.Type;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.Date;
+
+/**
+ * A log entry of a workflow execution. Is only encoded to BSON when it is written to the mongo database.
+ */
+class LogRecord {
+    /**
+     * The id of the document, assigned up front so that replaying a {@link SpillLog} cannot insert it twice.
+     */
+    final ObjectId id;
+    final long workflowId;
+    final String workflowContent;
+    final String workflowInput;
+    final String functionId;
+    final String deployment;
+    final String functionName;
+    final String functionType;
+    final Event event;
+    final String output;
+    final long RTT;
+    final double cost;
+    final boolean success;
+    final int loopCounter;
+    final int maxLoopCounter;
+    final long startTime;
+    final Type type;
+    /**
+     * The position of the log entry in its {@link LogBuffer}.
+     */
+    long sequence;
+    /**
+     * The segment of the {@link SpillLog} holding the log entry, -1 if it was not spilled or was written already.
+     */
+    int segment = -1;
+
+    LogRecord(long workflowId, String workflowContent, String workflowInput, String functionId, String deployment,
+              String functionName, String functionType, Event event, String output, long RTT, double cost,
+              boolean success, int loopCounter, int maxLoopCounter, long startTime, Type type) {
+        this(new ObjectId(), workflowId, workflowContent, workflowInput, functionId, deployment, functionName,
+                functionType, event, output, RTT, cost, success, loopCounter, maxLoopCounter, startTime, type);
+    }
+
+    /**
+     * Creates a log entry with the given id, e.g. a log entry read from the mongo database or a {@link SpillLog}.
+     */
+    LogRecord(ObjectId id, long workflowId, String workflowContent, String workflowInput, String functionId,
+              String deployment, String functionName, String functionType, Event event, String output, long RTT,
+              double cost, boolean success, int loopCounter, int maxLoopCounter, long startTime, Type type) {
+        this.id = id;
+        this.workflowId = workflowId;
+        this.workflowContent = workflowContent;
+        this.workflowInput = workflowInput;
+        this.functionId = functionId;
+        this.deployment = deployment;
+        this.functionName = functionName;
+        this.functionType = functionType;
+        this.event = event;
+        this.output = output;
+        this.RTT = RTT;
+        this.cost = cost;
+        this.success = success;
+        this.loopCounter = loopCounter;
+        this.maxLoopCounter = maxLoopCounter;
+        this.startTime = startTime;
+        this.type = type;
+    }
+
+    long getEndTime() {
+        return startTime + RTT;
+    }
+
+    /**
+     * Converts the log entry to a document with the same fields as it is stored in the mongo database.
+     *
+     * @return the document
+     */
+    Document toDocument() {
+        return new Document("_id", id)
+                .append("workflow_id", workflowId)
+                .append("workflowContent", workflowContent)
+                .append("workflowInput", workflowInput)
+                .append("function_id", functionId)
+                .append("deployment", deployment)
+                .append("functionName", functionName)
+                .append("functionType", functionType)
+                .append("Event", event.toString())
+                .append("output", output)
+                .append("RTT", RTT)
+                .append("cost", cost)
+                .append("success", success)
+                .append("loopCounter", loopCounter)
+                .append("maxLoopCounter", maxLoopCounter)
+                .append("startTime", new Date(startTime))
+                .append("endTime", new Date(getEndTime()))
+                .append("type", type.toString())
+                .append("done", event.getDone()); // flag used to update metadataDB
+    }
+}
@@ -0,0 +1,167 @@
+package at.uibk.dps.databases;
+
+import at.uibk.dps.util.Event;
+import at.uibk.dps.util.Type;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+/**
+ * Encodes a {@link LogRecord} directly to BSON, with the same fields as {@link LogRecord#toDocument()}, and decodes it
+ * again, e.g. to replay the records of a {@link SpillLog}.
+ */
+class LogRecordCodec implements Codec<LogRecord> {
+
+    @Override
+    public void encode(BsonWriter writer, LogRecord log, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writer.writeObjectId("_id", log.id);
+        writer.writeInt64("workflow_id", log.workflowId);
+        writeString(writer, "workflowContent", log.workflowContent);
+        writeString(writer, "workflowInput", log.workflowInput);
+        writeString(writer, "function_id", log.functionId);
+        writeString(writer, "deployment", log.deployment);
+        writeString(writer, "functionName", log.functionName);
+        writeString(writer, "functionType", log.functionType);
+        writer.writeString("Event", log.event.toString());
+        writeString(writer, "output", log.output);
+        writer.writeInt64("RTT", log.RTT);
+        writer.writeDouble("cost", log.cost);
+        writer.writeBoolean("success", log.success);
+        writer.writeInt32("loopCounter", log.loopCounter);
+        writer.writeInt32("maxLoopCounter", log.maxLoopCounter);
+        writer.writeDateTime("startTime", log.startTime);
+        writer.writeDateTime("endTime", log.getEndTime());
+        writer.writeString("type", log.type.toString());
+        // flag used to update metadataDB
+        Long done = log.event.getDone();
+        if (done == null) {
+            writer.writeNull("done");
+        } else {
+            writer.writeInt64("done", done);
+        }
+        writer.writeEndDocument();
+    }
+
+    private static void writeString(BsonWriter writer, String name, String value) {
+        if (value == null) {
+            writer.writeNull(name);
+        } else {
+            writer.writeString(name, value);
+        }
+    }
+
+    /**
+     * Decodes a log entry written by {@link #encode(BsonWriter, LogRecord, EncoderContext)}. Missing or null fields
+     * get the default values of {@link LogRecord}, the derived fields 'endTime' and 'done' are ignored.
+     *
+     * @throws IllegalArgumentException if the 'Event' or 'type' field has an unknown value
+     */
+    @Override
+    public LogRecord decode(BsonReader reader, DecoderContext decoderContext) {
+        ObjectId id = null;
+        long workflowId = 0;
+        String workflowContent = null;
+        String workflowInput = null;
+        String functionId = null;
+        String deployment = null;
+        String functionName = null;
+        String functionType = null;
+        Event event = null;
+        String output = null;
+        long RTT = 0;
+        double cost = -1;
+        boolean success = false;
+        int loopCounter = -1;
+        int maxLoopCounter = -1;
+        long startTime = 0;
+        Type type = null;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            if (reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.readNull();
+                continue;
+            }
+            switch (name) {
+                case "_id":
+                    id = reader.readObjectId();
+                    break;
+                case "workflow_id":
+                    workflowId = readLong(reader);
+                    break;
+                case "workflowContent":
+                    workflowContent = reader.readString();
+                    break;
+                case "workflowInput":
+                    workflowInput = reader.readString();
+                    break;
+                case "function_id":
+                    functionId = reader.readString();
+                    break;
+                case "deployment":
+                    deployment = reader.readString();
+                    break;
+                case "functionName":
+                    functionName = reader.readString();
+                    break;
+                case "functionType":
+                    functionType = reader.readString();
+                    break;
+                case "Event":
+                    event = Event.valueOf(reader.readString());
+                    break;
+                case "output":
+                    output = reader.readString();
+                    break;
+                case "RTT":
+                    RTT = readLong(reader);
+                    break;
+                case "cost":
+                    cost = reader.readDouble();
+                    break;
+                case "success":
+                    success = reader.readBoolean();
+                    break;
+                case "loopCounter":
+                    loopCounter = (int) readLong(reader);
+                    break;
+                case "maxLoopCounter":
+                    maxLoopCounter = (int) readLong(reader);
+                    break;
+                case "startTime":
+                    startTime = reader.readDateTime();
+                    break;
+                case "type":
+                    type = Type.valueOf(reader.readString());
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return new LogRecord(id != null ? id : new ObjectId(), workflowId, workflowContent, workflowInput, functionId,
+                deployment, functionName, functionType, event, output, RTT, cost, success, loopCounter, maxLoopCounter,
+                startTime, type);
+    }
+
+    /**
+     * Reads an integer field, which may have been written as 32 or 64 bit integer.
+     */
+    private static long readLong(BsonReader reader) {
+        if (reader.getCurrentBsonType() == BsonType.INT32) {
+            return reader.readInt32();
+        }
+        return reader.readInt64();
+    }
+
+    @Override
+    public Class<LogRecord> getEncoderClass() {
+        return LogRecord.class;
+    }
+}
@@ -0,0 +1,32 @@
+package at.uibk.dps.databases;
+
+import org.bson.types.ObjectId;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Stores the log entries. Is implemented by the mongo database and can be replaced, e.g. by an in-memory stand-in for
+ * benchmarks.
+ */
+interface LogStore {
+
+    /**
+     * Inserts the given log entries.
+     *
+     * @param logs to insert
+     *
+     * @throws IOException if the store cannot be reached
+     */
+    void insert(List<LogRecord> logs) throws IOException;
+
+    /**
+     * Sets the 'done' field of the log entries with the given ids.
+     *
+     * @param value the value to set the field to, 1 means "done", 2 means "ignored"
+     * @param ids   of the log entries
+     *
+     * @throws IOException if the store cannot be reached
+     */
+    void setDone(Long value, List<ObjectId> ids) throws IOException;
+}
@@ -1,17 +1,28 @@
 package at.uibk.dps.databases;
 
+import at.uibk.dps.metrics.Metrics;
 import at.uibk.dps.util.Provider;
 import at.uibk.dps.util.Utils;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.mariadb.jdbc.MariaDbPoolDataSource;
 
+import javax.sql.DataSource;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetFactory;
+import javax.sql.rowset.RowSetProvider;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.sql.*;
-import java.util.Properties;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Class to handle communication with the mongo database.
@@ -19,8 +30,29 @@ import java.util.function.Consumer;
 public class MariaDBAccess {
     private static final String JDBC_DRIVER = "org.mariadb.jdbc.Driver";
     private static final String PATH_TO_PROPERTIES = "mariaDatabase.properties";
+    private static final String DEFAULT_POOL_SIZE = "10";
+    private static final String DEFAULT_STATEMENT_CACHE_SIZE = "250";
+    private static final String DEFAULT_BATCH_SIZE = "500";
     private static MariaDBAccess mariaDBAccess;
-    private static Connection mariaConnection = null;
+    private static DataSource dataSource = null;
+    /**
+     * The connection returned by {@link #getConnection()}, null until it is requested.
+     */
+    private static Connection sharedConnection;
+    private static RowSetFactory rowSetFactory;
+    /**
+     * The amount of log entries written in one transaction by {@link #updateBatched(Iterable)}.
+     */
+    private static int batchSize = Integer.parseInt(DEFAULT_BATCH_SIZE);
+    /**
+     * The snapshot answering the lookups of the scheduler, null if the lookups query the metadata DB.
+     */
+    private static volatile MetadataSnapshot snapshot;
+    private static ScheduledExecutorService snapshotRefresher;
+    /**
+     * Calculates the costs with cached provider prices.
+     */
+    private static final CostModel costModel = new CostModel(TimeUnit.MINUTES.toMillis(1));
     /**
      * Specifies whether some information should be printed or not;
      */
@@ -28,39 +60,165 @@ public class MariaDBAccess {
     /**
      * Counts the amount of skipped logs while updating.
      */
-    private static long skipped = 0;
+    private static final AtomicLong skipped = new AtomicLong();
     /**
      * Counts the amount of updated logs while updating.
      */
-    private static long updated = 0;
+    private static final AtomicLong updated = new AtomicLong();
+    /**
+     * Locks guarding the read-modify-write of functionimplementation and functiontype entries, which are shared by
+     * documents of different function ids.
+     */
+    private static final Object[] entryLocks = new Object[64];
+
+    static {
+        for (int i = 0; i < entryLocks.length; i++) {
+            entryLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Adds an invocation to a functionimplementation or functiontype entry, the table is inserted with
+     * {@link String#format} in {@link #INCREMENT_IMPLEMENTATION} and {@link #INCREMENT_TYPE}. The parameters are the
+     * RTT, the cost (null if unknown), 1 if the invocation was successful (0 otherwise) and the id of the entry.
+     * <p>
+     * The formulas are the same as in {@link MetadataEntry#add(long, double, boolean)}. MariaDB assigns the columns
+     * from left to right and later assignments see the new values, so the invocations have to be assigned last. The
+     * divisor is a double, so the averages are computed in floating point like in Java.
+     */
+    private static final String INCREMENT_ENTRY = "UPDATE %s SET "
+            + "avgRTT = (avgRTT * invocations + ?) / (invocations + 1E0), "
+            + "avgCost = (avgCost * invocations + COALESCE(?, avgCost)) / (invocations + 1E0), "
+            + "successRate = (ROUND(successRate * invocations) + ?) / (invocations + 1E0), "
+            + "invocations = invocations + 1 WHERE id = ?";
+    /**
+     * Adds an invocation to a functiondeployment entry like {@link #INCREMENT_ENTRY}. The parameters are the RTT, the
+     * runtime (null if unknown), the cost (null if unknown), 1 if the invocation was successful (0 otherwise), the
+     * maximum loop counter and the function id of the entry.
+     */
+    private static final String INCREMENT_DEPLOYMENT = "UPDATE functiondeployment SET "
+            + "avgRTT = (avgRTT * invocations + ?) / (invocations + 1E0), "
+            + "avgRuntime = (avgRuntime * invocations + COALESCE(?, TRUNCATE(avgRuntime, 0))) / (invocations + 1E0), "
+            + "avgCost = (avgCost * invocations + COALESCE(?, avgCost)) / (invocations + 1E0), "
+            + "successRate = (ROUND(successRate * invocations) + ?) / (invocations + 1E0), "
+            + "avgLoopCounter = CEIL((avgLoopCounter * invocations + ?) / (invocations + 1E0)), "
+            + "invocations = invocations + 1 WHERE KMS_Arn = ?";
+    private static final String INCREMENT_IMPLEMENTATION = String.format(INCREMENT_ENTRY, "functionimplementation");
+    private static final String INCREMENT_TYPE = String.format(INCREMENT_ENTRY, "functiontype");
+    /**
+     * Caches the ids of the functiondeployment entries per function id during an update run.
+     */
+    private static final Map<String, DeploymentInfo> deploymentCache = new ConcurrentHashMap<>();
+    /**
+     * The function ids without functiondeployment entry, mapped by the time in nanoseconds until which they are not
+     * read again. They expire after {@link #DEPLOYMENT_MISS_TTL}, so the logs of a function deployed in the meantime
+     * are not skipped.
+     */
+    private static final Map<String, Long> deploymentMisses = new ConcurrentHashMap<>();
+    private static final long DEPLOYMENT_MISS_TTL = TimeUnit.SECONDS.toNanos(10);
+    /**
+     * The column of the functiondeployment, functionimplementation and functiontype tables storing the serialized
+     * {@link LatencySketch} of the round trip times.
+     */
+    private static final String RTT_SKETCH = "rttSketch";
+    private static final String CPU_BY_PROVIDER =
+            "SELECT * FROM cpu WHERE provider = ? AND ? >= from_percentage AND ? < to_percentage AND parallel = ?";
+    private static final String CPU_BY_PROVIDER_AND_REGION = "SELECT * FROM cpu WHERE provider = ? AND region = ? AND "
+            + "? >= from_percentage AND ? < to_percentage AND parallel = ?";
+    /**
+     * The round trip times of the updated log entries that are not merged into the metadata DB yet, mapped by the
+     * function id of the functiondeployment entry and by the id of the functionimplementation and functiontype entry.
+     */
+    private static final Map<String, LatencySketch> deploymentSketches = new ConcurrentHashMap<>();
+    private static final Map<Integer, LatencySketch> implementationSketches = new ConcurrentHashMap<>();
+    private static final Map<Integer, LatencySketch> typeSketches = new ConcurrentHashMap<>();
+    /**
+     * Matches the kind of a statement and the word following it, e.g. 'UPDATE provider' or 'SELECT *'.
+     */
+    private static final Pattern STATEMENT = Pattern.compile("^\\s*(\\w+)\\s+(\\S+)");
+    /**
+     * Matches the table a statement reads from or inserts into, e.g. 'FROM provider'.
+     */
+    private static final Pattern TABLE = Pattern.compile("\\b(?:FROM|INTO)\\s+(\\w+)", Pattern.CASE_INSENSITIVE);
+    /**
+     * The names of the executed statements in the metrics, mapped by the statement.
+     */
+    private static final Map<String, String> statementNames = new ConcurrentHashMap<>();
 
     /**
-     * Updates the metadata DB with the given document and sets its 'done'-field to true.
+     * Updates the metadata DB with the given document and marks its 'done'-field. The 'done'-fields are written in
+     * batches, so {@link MongoDBAccess#flushDone()} has to be called after the last document.
      */
     public static Consumer<Document> updateMD = new Consumer<Document>() {
         @Override
         public void accept(final Document document) {
-            if (document.getString("function_id") != null) {
-                if (functionIdEntryExists(document)) {
-                    if (print) {
-                        System.out.println("Updating entries for function with id '" + document.getString("function_id") + "'.");
-                    }
-                    updateMetadata(document);
-                    updated++;
-                    // set the log entry as done
-                    MongoDBAccess.setAsDone(document, 1L);
+            update(UpdateEntry.fromDocument(document));
+        }
+    };
+
+    /**
+     * Updates the metadata DB with the given log entry and marks its 'done'-field. The 'done'-fields are written in
+     * batches, so {@link MongoDBAccess#flushDone()} has to be called after the last entry, the round trip time
+     * sketches are written by {@link #flushSketches()}.
+     *
+     * @param log the log entry to update
+     */
+    public static void update(UpdateEntry log) {
+        update(log, false);
+    }
+
+    /**
+     * Updates the metadata DB with the given log entry like {@link #update(UpdateEntry)}, but each entry of the
+     * metadata DB is updated with a single statement that computes the new running averages in the database. The
+     * entries are neither read nor locked, so concurrent statements, also from other processes, lose no increments.
+     * Each log entry still has to be updated by a single update run only, otherwise it is counted twice.
+     *
+     * @param log the log entry to update
+     */
+    public static void updateAtomic(UpdateEntry log) {
+        update(log, true);
+    }
+
+    /**
+     * Updates the metadata DB with the given log entry and marks its 'done'-field.
+     *
+     * @param log    the log entry to update
+     * @param atomic whether the entries are updated with single statements instead of being read and written
+     */
+    private static void update(UpdateEntry log, boolean atomic) {
+        if (log.getFunctionId() != null) {
+            DeploymentInfo deployment;
+            try {
+                deployment = getCachedDeploymentInfo(log.getFunctionId());
+            } catch (SQLException exception) {
+                // the log entry stays undone and is updated again in the next run
+                exception.printStackTrace();
+                return;
+            }
+            if (deployment != null) {
+                if (print) {
+                    System.out.println("Updating entries for function with id '" + log.getFunctionId() + "'.");
+                }
+                if (atomic) {
+                    updateMetadataAtomic(log, deployment);
                 } else {
-                    if (print) {
-                        System.out.println("No entry for function with id '" + document.getString("function_id") +
-                                "' found. Skipped.");
-                    }
-                    // set the log entry as ignored
-                    MongoDBAccess.setAsDone(document, 2L);
-                    skipped++;
+                    updateMetadata(log, deployment);
+                }
+                addRTT(log, deployment);
+                countUpdated();
+                // set the log entry as done
+                MongoDBAccess.markAsDone(log.getId(), 1L);
+            } else {
+                if (print) {
+                    System.out.println("No entry for function with id '" + log.getFunctionId() +
+                            "' found. Skipped.");
                 }
+                // set the log entry as ignored
+                MongoDBAccess.markAsDone(log.getId(), 2L);
+                countSkipped();
             }
         }
-    };
+    }
 
     private MariaDBAccess() {
         try {
@@ -73,36 +231,207 @@ public class MariaDBAccess {
             final String username = databaseFile.getProperty("username");
             final String password = databaseFile.getProperty("password");
             final String database = databaseFile.getProperty("database");
-            final String db_url = "jdbc:mariadb://" + host + ":" + port + "/" + database;
-
-            mariaConnection = DriverManager.getConnection(db_url, username, password);
+            final int poolSize = Integer.parseInt(databaseFile.getProperty("poolSize", DEFAULT_POOL_SIZE));
+            final int statementCacheSize = Integer.parseInt(databaseFile.getProperty("statementCacheSize",
+                    DEFAULT_STATEMENT_CACHE_SIZE));
+            final boolean rewriteBatchedStatements = Boolean.parseBoolean(
+                    databaseFile.getProperty("rewriteBatchedStatements", "false"));
+            batchSize = Integer.parseInt(databaseFile.getProperty("batchSize", DEFAULT_BATCH_SIZE));
+            // every pooled connection caches its server-side prepared statements, unless batches are rewritten into
+            // multi-statements, which are only possible with client-side prepared statements
+            final String db_url = "jdbc:mariadb://" + host + ":" + port + "/" + database
+                    + "?maxPoolSize=" + poolSize
+                    + "&useServerPrepStmts=" + !rewriteBatchedStatements
+                    + "&cachePrepStmts=true&prepStmtCacheSize=" + statementCacheSize
+                    + "&rewriteBatchedStatements=" + rewriteBatchedStatements;
+
+            MariaDbPoolDataSource poolDataSource = new MariaDbPoolDataSource(db_url);
+            poolDataSource.setUser(username);
+            poolDataSource.setPassword(password);
+            rowSetFactory = RowSetProvider.newFactory();
+            dataSource = poolDataSource;
         } catch (ClassNotFoundException | SQLException | IOException e) {
             e.printStackTrace();
         }
     }
 
-    public static synchronized Connection getConnection() {
-        if (mariaConnection == null) {
+    /**
+     * Gets a connection from the connection pool, creating the pool if necessary.
+     *
+     * @return the connection
+     *
+     * @throws SQLException if no connection can be established
+     */
+    private static Connection openConnection() throws SQLException {
+        return getDataSource().getConnection();
+    }
+
+    /**
+     * Gets the connection pool, creating it and reading the properties if necessary.
+     *
+     * @return the connection pool
+     *
+     * @throws SQLException if the connection pool cannot be created
+     */
+    private static synchronized DataSource getDataSource() throws SQLException {
+        if (dataSource == null) {
             mariaDBAccess = new MariaDBAccess();
         }
-        return mariaConnection;
+        if (dataSource == null) {
+            throw new SQLException("Connection pool for the metadata DB could not be created.");
+        }
+        return dataSource;
+    }
+
+    /**
+     * Replaces the connection pool, e.g. with an in-memory stand-in.
+     *
+     * @param source the new source of connections
+     *
+     * @throws SQLException if the cached results cannot be created
+     */
+    static synchronized void setDataSource(DataSource source) throws SQLException {
+        if (rowSetFactory == null) {
+            rowSetFactory = RowSetProvider.newFactory();
+        }
+        dataSource = source;
     }
 
     /**
-     * Checks if an entry with the function id (e.g. ARN) of the document exists in the functiondeployment table of the
-     * metadata DB.
+     * Gets the connection shared by all callers, it is taken from the connection pool once and must not be closed.
      *
-     * @param document to get the function id
+     * @return the connection, null if no connection can be established
      *
-     * @return true if it exists, false otherwise
+     * @deprecated the queries of this class use their own pooled connections, a shared connection cannot be used by
+     * several threads at the same time
      */
-    private static boolean functionIdEntryExists(Document document) {
+    @Deprecated
+    public static synchronized Connection getConnection() {
         try {
-            return getFunctionIdEntry(document.getString("function_id")).next();
+            if (sharedConnection == null || sharedConnection.isClosed()) {
+                sharedConnection = openConnection();
+            }
+            return sharedConnection;
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
-        return false;
+        return null;
+    }
+
+    /**
+     * Executes the given query and returns a disconnected copy of its result, so the statement and the connection are
+     * released immediately.
+     *
+     * @param query      to execute
+     * @param parameters to set in the query
+     *
+     * @return the result of the query
+     *
+     * @throws SQLException if the query fails
+     */
+    private static ResultSet executeQuery(String query, Object... parameters) throws SQLException {
+        String name = getStatementName(query);
+        long start = System.nanoTime();
+        try (Connection connection = openConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            for (int i = 0; i < parameters.length; i++) {
+                preparedStatement.setObject(i + 1, parameters[i]);
+            }
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                CachedRowSet rowSet = rowSetFactory.createCachedRowSet();
+                rowSet.populate(resultSet);
+                Metrics.mark("mariadb.rows.read", rowSet.size());
+                return rowSet;
+            }
+        } catch (SQLException exception) {
+            Metrics.error(name, exception);
+            throw exception;
+        } finally {
+            Metrics.recordLatency(name, start);
+        }
+    }
+
+    /**
+     * Executes the given query and copies the rows directly into {@link MetadataRow}s, without a CachedRowSet.
+     *
+     * @param query      to execute
+     * @param parameters of the query
+     *
+     * @return the rows
+     *
+     * @throws SQLException if the query fails
+     */
+    private static List<MetadataRow> queryRows(String query, Object... parameters) throws SQLException {
+        String name = getStatementName(query);
+        long start = System.nanoTime();
+        try (Connection connection = openConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            for (int i = 0; i < parameters.length; i++) {
+                preparedStatement.setObject(i + 1, parameters[i]);
+            }
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                List<MetadataRow> rows = MetadataRow.readAll(resultSet);
+                Metrics.mark("mariadb.rows.read", rows.size());
+                return rows;
+            }
+        } catch (SQLException exception) {
+            Metrics.error(name, exception);
+            throw exception;
+        } finally {
+            Metrics.recordLatency(name, start);
+        }
+    }
+
+    /**
+     * Executes the given update.
+     *
+     * @param update     to execute
+     * @param parameters to set in the update
+     *
+     * @throws SQLException if the update fails
+     */
+    private static void executeUpdate(String update, Object... parameters) throws SQLException {
+        String name = getStatementName(update);
+        long start = System.nanoTime();
+        try (Connection connection = openConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(update)) {
+            for (int i = 0; i < parameters.length; i++) {
+                preparedStatement.setObject(i + 1, parameters[i]);
+            }
+            Metrics.mark("mariadb.rows.written", preparedStatement.executeUpdate());
+        } catch (SQLException exception) {
+            Metrics.error(name, exception);
+            throw exception;
+        } finally {
+            Metrics.recordLatency(name, start);
+        }
+    }
+
+    /**
+     * Gets the name of the given statement in the metrics, which consists of the kind of the statement and its table,
+     * e.g. 'mariadb.select.provider'.
+     *
+     * @param statement the SQL statement
+     *
+     * @return the name of the statement
+     */
+    private static String getStatementName(String statement) {
+        String name = statementNames.get(statement);
+        if (name == null) {
+            name = "mariadb.statement";
+            Matcher matcher = STATEMENT.matcher(statement);
+            if (matcher.find()) {
+                String kind = matcher.group(1).toLowerCase();
+                String table = matcher.group(2);
+                if (!kind.equals("update")) {
+                    Matcher tableMatcher = TABLE.matcher(statement);
+                    table = tableMatcher.find() ? tableMatcher.group(1) : kind;
+                }
+                name = "mariadb." + kind + "." + table.toLowerCase();
+            }
+            statementNames.put(statement, name);
+        }
+        return name;
     }
 
     /**
@@ -114,16 +443,11 @@ public class MariaDBAccess {
      * @return the ResultSet
      */
     public static ResultSet getFunctionIdEntry(String functionId) {
-        Connection connection = getConnection();
         String query = "SELECT * FROM functiondeployment WHERE KMS_Arn = ?";
-
-        PreparedStatement preparedStatement;
         ResultSet resultSet = null;
 
         try {
-            preparedStatement = connection.prepareStatement(query);
-            preparedStatement.setString(1, functionId);
-            resultSet = preparedStatement.executeQuery();
+            resultSet = executeQuery(query, functionId);
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
@@ -139,16 +463,15 @@ public class MariaDBAccess {
      * @return the ResultSet
      */
     public static ResultSet getDeploymentById(int id) {
-        Connection connection = getConnection();
+        MetadataSnapshot current = snapshot;
+        if (current != null) {
+            return fromSnapshot(current, "functiondeployment", current.getDeploymentById(id));
+        }
         String query = "SELECT * FROM functiondeployment WHERE id = ?";
-
-        PreparedStatement preparedStatement;
         ResultSet resultSet = null;
 
         try {
-            preparedStatement = connection.prepareStatement(query);
-            preparedStatement.setInt(1, id);
-            resultSet = preparedStatement.executeQuery();
+            resultSet = executeQuery(query, id);
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
@@ -156,30 +479,6 @@ public class MariaDBAccess {
         return resultSet;
     }
 
-    /**
-     * Gets the id from the metadata DB for the functiontype with the given name and type.
-     *
-     * @param functionImplementationId to get the entry
-     *
-     * @return the id from the functiontype in the DB
-     */
-    private static int getFunctionTypeId(int functionImplementationId) {
-        Connection connection = getConnection();
-        PreparedStatement preparedStatement;
-        String query = "SELECT functionType_id FROM functionimplementation WHERE id = ?";
-        try {
-            preparedStatement = connection.prepareStatement(query);
-            preparedStatement.setInt(1, functionImplementationId);
-            ResultSet resultSet = preparedStatement.executeQuery();
-            if (resultSet.next()) {
-                return resultSet.getInt("functionType_id");
-            }
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
-        return -1;
-    }
-
     /**
      * Gets the entry from the metadata DB for the given provider.
      *
@@ -188,13 +487,9 @@ public class MariaDBAccess {
      * @return the entry from the provider in the DB
      */
     public static ResultSet getProviderEntry(Provider provider) {
-        Connection connection = getConnection();
-        PreparedStatement preparedStatement;
         String query = "SELECT * FROM provider WHERE name = ?";
         try {
-            preparedStatement = connection.prepareStatement(query);
-            preparedStatement.setString(1, provider.name());
-            return preparedStatement.executeQuery();
+            return executeQuery(query, provider.name());
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
@@ -210,14 +505,13 @@ public class MariaDBAccess {
      * @return the entry from the region in the DB
      */
     public static ResultSet getRegionEntry(String region, Provider provider) {
-        Connection connection = getConnection();
-        PreparedStatement preparedStatement;
+        MetadataSnapshot current = snapshot;
+        if (current != null) {
+            return fromSnapshot(current, "region", current.getRegion(region, provider));
+        }
         String query = "SELECT * FROM region WHERE region = ? AND provider = ?";
         try {
-            preparedStatement = connection.prepareStatement(query);
-            preparedStatement.setString(1, region);
-            preparedStatement.setString(2, provider.name());
-            return preparedStatement.executeQuery();
+            return executeQuery(query, region, provider.name());
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
@@ -232,13 +526,14 @@ public class MariaDBAccess {
      * @return the entries with the given functionImplementationId.
      */
     public static ResultSet getDeploymentsWithImplementationId(int functionImplementationId) {
-        Connection connection = getConnection();
-        PreparedStatement preparedStatement;
+        MetadataSnapshot current = snapshot;
+        if (current != null) {
+            return fromSnapshot(current, "functiondeployment",
+                    current.getDeploymentsWithImplementationId(functionImplementationId));
+        }
         String query = "SELECT * FROM functiondeployment WHERE functionImplementation_id = ? AND invocations > 0";
         try {
-            preparedStatement = connection.prepareStatement(query);
-            preparedStatement.setInt(1, functionImplementationId);
-            return preparedStatement.executeQuery();
+            return executeQuery(query, functionImplementationId);
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
@@ -254,14 +549,14 @@ public class MariaDBAccess {
      * @return the entries with the given functionImplementationId and memorySize
      */
     public static ResultSet getDeploymentsWithImplementationIdAndMemorySize(int functionImplementationId, int memorySize) {
-        Connection connection = getConnection();
-        PreparedStatement preparedStatement;
+        MetadataSnapshot current = snapshot;
+        if (current != null) {
+            return fromSnapshot(current, "functiondeployment",
+                    current.getDeploymentsWithImplementationIdAndMemorySize(functionImplementationId, memorySize));
+        }
         String query = "SELECT * FROM functiondeployment WHERE functionImplementation_id = ? AND memorySize = ?";
         try {
-            preparedStatement = connection.prepareStatement(query);
-            preparedStatement.setInt(1, functionImplementationId);
-            preparedStatement.setInt(2, memorySize);
-            return preparedStatement.executeQuery();
+            return executeQuery(query, functionImplementationId, memorySize);
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
@@ -276,16 +571,15 @@ public class MariaDBAccess {
      * @return the entry with the given id
      */
     public static ResultSet getImplementationById(int id) {
-        Connection connection = getConnection();
+        MetadataSnapshot current = snapshot;
+        if (current != null) {
+            return fromSnapshot(current, "functionimplementation", current.getImplementationById(id));
+        }
         String query = "SELECT * FROM functionimplementation WHERE id = ?";
-
-        PreparedStatement preparedStatement;
         ResultSet resultSet = null;
 
         try {
-            preparedStatement = connection.prepareStatement(query);
-            preparedStatement.setInt(1, id);
-            resultSet = preparedStatement.executeQuery();
+            resultSet = executeQuery(query, id);
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
@@ -294,373 +588,1134 @@ public class MariaDBAccess {
     }
 
     /**
-     * Gets a set of CPUs for the given provider.
+     * Copies the given row of the snapshot into a ResultSet.
      *
-     * @param provider to get the CPUs from
+     * @param snapshot the snapshot of the row
+     * @param table    the table of the row
+     * @param row      to copy, null for an empty ResultSet
      *
-     * @return a set of CPUs for the given provider
+     * @return the ResultSet, null if it cannot be created
      */
-    public static ResultSet getCpuByProvider(Provider provider, int parallel, int percentage) {
-        Connection connection = getConnection();
-        String query = "SELECT * FROM cpu WHERE provider = ? AND ? >= from_percentage AND ? < to_percentage AND parallel = ?";
+    private static ResultSet fromSnapshot(MetadataSnapshot snapshot, String table, MetadataRow row) {
+        return fromSnapshot(snapshot, table,
+                row == null ? Collections.<MetadataRow>emptyList() : Collections.singletonList(row));
+    }
 
-        PreparedStatement preparedStatement;
-        ResultSet resultSet = null;
-        ResultSet providerEntry = getProviderEntry(provider);
+    /**
+     * Copies the given rows of the snapshot into a ResultSet.
+     *
+     * @param snapshot the snapshot of the rows
+     * @param table    the table of the rows
+     * @param rows     to copy
+     *
+     * @return the ResultSet, null if it cannot be created
+     */
+    private static ResultSet fromSnapshot(MetadataSnapshot snapshot, String table, List<MetadataRow> rows) {
         try {
-            providerEntry.next();
-            int provider_id = providerEntry.getInt("id");
-            preparedStatement = connection.prepareStatement(query);
-            preparedStatement.setInt(1, provider_id);
-            preparedStatement.setInt(2, percentage);
-            preparedStatement.setInt(3, percentage);
-            preparedStatement.setInt(4, parallel);
-            resultSet = preparedStatement.executeQuery();
+            return snapshot.toResultSet(rowSetFactory, table, rows);
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
-        return resultSet;
+        return null;
     }
 
     /**
-     * Gets a set of CPUs for the given provider and region.
+     * Gets the functiondeployment entry with the given id like {@link #getDeploymentById(int)}, but without copying it
+     * into a ResultSet. Uses the snapshot if it is enabled, see {@link #enableSnapshot(long)}.
      *
-     * @param provider to get the CPUs from
-     * @param region   to get the CPUs from
+     * @param id to get the entry
      *
-     * @return a set of CPUs for the given provider and region
+     * @return the entry, null if there is none or it cannot be read
      */
-    public static ResultSet getCpuByProviderAndRegion(Provider provider, String region, int parallel, int percentage) {
-        Connection connection = getConnection();
-        String query = "SELECT * FROM cpu WHERE provider = ? AND region = ? AND ? >= from_percentage AND ? < to_percentage AND parallel = ?";
-
-        PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null;
-        ResultSet providerEntry = getProviderEntry(provider);
-        ResultSet regionEntry = getRegionEntry(region, provider);
-        try {
-            providerEntry.next();
-            int provider_id = providerEntry.getInt("id");
-            regionEntry.next();
-            int region_id = regionEntry.getInt("id");
-            preparedStatement = connection.prepareStatement(query);
-            preparedStatement.setInt(1, provider_id);
-            preparedStatement.setInt(2, region_id);
-            preparedStatement.setInt(3, percentage);
-            preparedStatement.setInt(4, percentage);
-            preparedStatement.setInt(5, parallel);
-            resultSet = preparedStatement.executeQuery();
-        } catch (SQLException exception) {
-            exception.printStackTrace();
+    public static MetadataRow getDeploymentRow(int id) {
+        MetadataSnapshot current = snapshot;
+        if (current != null) {
+            return current.getDeploymentById(id);
         }
-        return resultSet;
+        return first(findRows("SELECT * FROM functiondeployment WHERE id = ?", id));
     }
 
     /**
-     * Calculates the cost for the given parameters.
+     * Gets the functionimplementation entry with the given id like {@link #getImplementationById(int)}, but without
+     * copying it into a ResultSet. Uses the snapshot if it is enabled.
      *
-     * @param memorySize to calculate
-     * @param runtime    to calculate
-     * @param provider   to calculate
+     * @param id to get the entry
      *
-     * @return the cost
+     * @return the entry, null if there is none or it cannot be read
      */
-    public static double calculateCost(int memorySize, double runtime, Provider provider) {
-        ResultSet resultSet = getProviderEntry(provider);
-        double result = -1;
-        if (resultSet != null) {
-            try {
-                resultSet.next();
-                double invocationCost = resultSet.getDouble("invocationCost");
-                double durationGBpsCost = resultSet.getDouble("durationGBpsCost");
-                int roundTo = resultSet.getInt("unitTimems");
-                runtime = ((runtime + roundTo - 1) / roundTo) * roundTo;
-
-                // fixed invocationCost + allocated memory size in GB * function runtime in sec * GBps cost
-                result = invocationCost + (((memorySize / 1000.0) * (runtime / 1000)) * durationGBpsCost);
-
-                if (provider == Provider.GOOGLE) {
-                    double durationGHzpsCost = resultSet.getDouble("durationGHzpsCost");
-                    int mhz;
-                    // values as explained in https://cloud.google.com/functions/pricing
-                    if (memorySize < 256) {
-                        mhz = 200;
-                    } else if (memorySize < 512) {
-                        mhz = 400;
-                    } else if (memorySize < 1024) {
-                        mhz = 800;
-                    } else if (memorySize < 2048) {
-                        mhz = 1400;
-                    } else if (memorySize < 4096) {
-                        mhz = 2400;
-                    } else {
-                        mhz = 4800;
-                    }
-                    result += ((mhz / 1000.0) * (runtime / 1000)) * durationGHzpsCost;
-                }
-
-            } catch (SQLException exception) {
-                exception.printStackTrace();
-            }
+    public static MetadataRow getImplementationRow(int id) {
+        MetadataSnapshot current = snapshot;
+        if (current != null) {
+            return current.getImplementationById(id);
         }
-
-        return result;
+        return first(findRows("SELECT * FROM functionimplementation WHERE id = ?", id));
     }
 
-    private static int getFunctionMemory(Document document) {
-        return getFieldFromOutput(document, "functionMemory");
+    /**
+     * Gets the region entry like {@link #getRegionEntry(String, Provider)}, but without copying it into a ResultSet.
+     * Uses the snapshot if it is enabled.
+     *
+     * @param region   to get the entry from
+     * @param provider to get the entry from
+     *
+     * @return the entry, null if there is none or it cannot be read
+     */
+    public static MetadataRow getRegionRow(String region, Provider provider) {
+        MetadataSnapshot current = snapshot;
+        if (current != null) {
+            return current.getRegion(region, provider);
+        }
+        return first(findRows("SELECT * FROM region WHERE region = ? AND provider = ?", region, provider.name()));
     }
 
-    private static int getRuntime(Document document) {
-        return getFieldFromOutput(document, "runtime");
+    /**
+     * Gets the functiondeployment entries like {@link #getDeploymentsWithImplementationId(int)}, but without copying
+     * them into a ResultSet. Uses the snapshot if it is enabled.
+     *
+     * @param functionImplementationId to get the entries from
+     *
+     * @return the entries, empty if there are none or they cannot be read
+     */
+    public static List<MetadataRow> getDeploymentRowsWithImplementationId(int functionImplementationId) {
+        MetadataSnapshot current = snapshot;
+        if (current != null) {
+            return current.getDeploymentsWithImplementationId(functionImplementationId);
+        }
+        return findRows("SELECT * FROM functiondeployment WHERE functionImplementation_id = ? AND invocations > 0",
+                functionImplementationId);
     }
 
     /**
-     * Checks the output field of the document for a given key.
+     * Gets the functiondeployment entries like {@link #getDeploymentsWithImplementationIdAndMemorySize(int, int)}, but
+     * without copying them into a ResultSet. Uses the snapshot if it is enabled.
      *
-     * @param document to check the field
-     * @param key      to check
+     * @param functionImplementationId to get the entries from
+     * @param memorySize               to get the entries from
      *
-     * @return the element for the given key as int, if it doesn't exist -1
+     * @return the entries, empty if there are none or they cannot be read
      */
-    private static int getFieldFromOutput(Document document, String key) {
-        JsonElement element = null;
-        String output = document.getString("output");
-
-        if (output != null) {
-            JsonObject json = (JsonObject) JsonParser.parseString(output);
-            element = json.get(key);
+    public static List<MetadataRow> getDeploymentRowsWithImplementationIdAndMemorySize(int functionImplementationId,
+                                                                                      int memorySize) {
+        MetadataSnapshot current = snapshot;
+        if (current != null) {
+            return current.getDeploymentsWithImplementationIdAndMemorySize(functionImplementationId, memorySize);
         }
+        return findRows("SELECT * FROM functiondeployment WHERE functionImplementation_id = ? AND memorySize = ?",
+                functionImplementationId, memorySize);
+    }
 
-        if (element == null) {
-            return -1;
-        } else {
-            return element.getAsInt();
+    /**
+     * Gets the cpu entries like {@link #getCpuByProvider(Provider, int, int)}, but without copying them into a
+     * ResultSet. Uses the snapshot if it is enabled.
+     *
+     * @param provider to get the CPUs from
+     *
+     * @return the entries, empty if there are none or they cannot be read
+     */
+    public static List<MetadataRow> getCpuRowsByProvider(Provider provider, int parallel, int percentage) {
+        MetadataSnapshot current = snapshot;
+        if (current != null) {
+            return current.getCpus(provider, parallel, percentage);
         }
+        MetadataRow providerEntry = getProviderRow(provider);
+        if (providerEntry == null) {
+            return Collections.emptyList();
+        }
+        return findRows(CPU_BY_PROVIDER, providerEntry.getInt("id"), percentage, percentage, parallel);
     }
 
     /**
-     * Updates the functionType table in the metadataDB for the given document.
+     * Gets the cpu entries like {@link #getCpuByProviderAndRegion(Provider, String, int, int)}, but without copying
+     * them into a ResultSet. Uses the snapshot if it is enabled.
      *
-     * @param document       to get the values
-     * @param functionTypeId to get the entry
+     * @param provider to get the CPUs from
+     * @param region   to get the CPUs from
+     *
+     * @return the entries, empty if there are none or they cannot be read
      */
-    private static void updateFunctionType(Document document, int functionTypeId, double cost) {
-        Connection connection = getConnection();
-
-        // get the fields from the document
-        Long RTT = document.getLong("RTT");
-        boolean success = document.getBoolean("success");
-
-        // query to check if there is already an entry in the functiontype table
-        String query = "SELECT * FROM functiontype WHERE id = ?";
-        PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null;
-        try {
-            preparedStatement = connection.prepareStatement(query);
-            preparedStatement.setInt(1, functionTypeId);
-            resultSet = preparedStatement.executeQuery();
-            resultSet.next();
-
-            // get the fields from the entry
-            int invocations = resultSet.getInt("invocations");
-            double avgRTT = resultSet.getDouble("avgRTT");
-            double avgCost = resultSet.getDouble("avgCost");
-            double successRate = resultSet.getDouble("successRate");
-            int successfulInvocations = (int) Math.round(successRate * invocations);
-
-            // if the cost is -1 or 0, set it to the average cost to prevent wrong values
-            if (cost == -1 || cost == 0) {
-                cost = avgCost;
-            }
-
-            // update the fields
-            double newAvgRTT = ((avgRTT * invocations) + RTT) / (invocations + 1);
-            double newCost = ((avgCost * invocations) + cost) / (invocations + 1);
-            if (success) {
-                successfulInvocations++;
-            }
-            double newSuccessRate = (double) successfulInvocations / (double) (invocations + 1);
-
-            // update the functionType table
-            String update = "UPDATE functiontype SET avgRTT = ?, avgCost = ?, successRate = ?, invocations = ? WHERE "
-                    + "id = ?";
-            preparedStatement = connection.prepareStatement(update);
-            preparedStatement.setDouble(1, newAvgRTT);
-            preparedStatement.setDouble(2, newCost);
-            preparedStatement.setDouble(3, newSuccessRate);
-            preparedStatement.setInt(4, (invocations + 1));
-            preparedStatement.setInt(5, functionTypeId);
-            preparedStatement.executeUpdate();
-
-        } catch (SQLException exception) {
-            exception.printStackTrace();
+    public static List<MetadataRow> getCpuRowsByProviderAndRegion(Provider provider, String region, int parallel,
+                                                                  int percentage) {
+        MetadataSnapshot current = snapshot;
+        if (current != null) {
+            return current.getCpus(provider, region, parallel, percentage);
+        }
+        MetadataRow providerEntry = getProviderRow(provider);
+        MetadataRow regionEntry = getRegionRow(region, provider);
+        if (providerEntry == null || regionEntry == null) {
+            return Collections.emptyList();
         }
+        return findRows(CPU_BY_PROVIDER_AND_REGION, providerEntry.getInt("id"), regionEntry.getInt("id"), percentage,
+                percentage, parallel);
     }
 
     /**
-     * Updates the functionimplementation table in the metadataDB for the given document.
+     * Gets the provider entry from the metadata DB, also if the snapshot is enabled.
      *
-     * @param document                 to get the values
-     * @param functionImplementationId to get the entry
+     * @param provider to get the entry from
+     *
+     * @return the entry, null if there is none or it cannot be read
      */
-    private static void updateFunctionImplementation(Document document, int functionImplementationId, double cost) {
-        Connection connection = getConnection();
-        // get the fields from the document
-        Long RTT = document.getLong("RTT");
-        Boolean success = document.getBoolean("success");
-
-        // query to check if there is already an entry in the functionimplementation table
-        String query = "SELECT * FROM functionimplementation WHERE id = ?";
+    private static MetadataRow getProviderRow(Provider provider) {
+        return first(findRows("SELECT * FROM provider WHERE name = ?", provider.name()));
+    }
 
-        PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null;
+    /**
+     * Reads the rows of the given query, prints the exception if it fails.
+     *
+     * @return the rows, empty if the query fails
+     */
+    private static List<MetadataRow> findRows(String query, Object... parameters) {
         try {
-            preparedStatement = connection.prepareStatement(query);
-            preparedStatement.setInt(1, functionImplementationId);
-            resultSet = preparedStatement.executeQuery();
-            // get the first entry
-            resultSet.next();
-
-            // get the fields from the entry
-            int invocations = resultSet.getInt("invocations");
-            double avgRTT = resultSet.getDouble("avgRTT");
-            double avgCost = resultSet.getDouble("avgCost");
-            double successRate = resultSet.getDouble("successRate");
-            int successfulInvocations = (int) Math.round(successRate * invocations);
-
-            // if the cost is -1 or 0, set it to the average cost to prevent wrong values
-            if (cost == -1 || cost == 0) {
-                cost = avgCost;
-            }
-
-            // update the fields
-            double newAvgRTT = ((avgRTT * invocations) + RTT) / (invocations + 1);
-            double newCost = ((avgCost * invocations) + cost) / (invocations + 1);
-            if (success) {
-                successfulInvocations++;
-            }
-            double newSuccessRate = (double) successfulInvocations / (double) (invocations + 1);
-
-            // update the functionimplementation table
-            String updateFunctionImplementation = "UPDATE functionimplementation SET avgRTT = ?, avgCost = ?, successRate = ?, invocations = ? WHERE "
-                    + "id = ?";
-            preparedStatement = connection.prepareStatement(updateFunctionImplementation);
-            preparedStatement.setDouble(1, newAvgRTT);
-            preparedStatement.setDouble(2, newCost);
-            preparedStatement.setDouble(3, newSuccessRate);
-            preparedStatement.setInt(4, (invocations + 1));
-            preparedStatement.setInt(5, functionImplementationId);
-            preparedStatement.executeUpdate();
-
+            return queryRows(query, parameters);
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
+        return Collections.emptyList();
+    }
+
+    private static MetadataRow first(List<MetadataRow> rows) {
+        return rows.isEmpty() ? null : rows.get(0);
     }
 
     /**
-     * Updates the functiondeployment table in the metadataDB for the given document.
+     * Answers the lookups of the scheduler from an in-memory snapshot of the functiondeployment,
+     * functionimplementation, provider, region and cpu tables instead of querying the metadata DB. The snapshot is read
+     * immediately and replaced by a new one after every refresh interval, lookups see either the old or the new
+     * snapshot, never a mix of both. The methods returning {@link MetadataRow}s, e.g. {@link #getDeploymentRow(int)},
+     * answer the same lookups without the copy into a ResultSet.
+     * <p>
+     * Updating the metadata DB always reads the current entries, the snapshot is only used by
+     * {@link #getDeploymentById(int)}, {@link #getRegionEntry(String, Provider)},
+     * {@link #getDeploymentsWithImplementationId(int)},
+     * {@link #getDeploymentsWithImplementationIdAndMemorySize(int, int)}, {@link #getImplementationById(int)},
+     * {@link #getCpuByProvider(Provider, int, int)} and {@link #getCpuByProviderAndRegion(Provider, String, int, int)}.
      *
-     * @param document to get the values
-     * @param entry    the entry to update
+     * @param refreshInterval the time between two refreshes in milliseconds
+     *
+     * @return true if the first snapshot was read, false if the lookups keep querying the metadata DB until a refresh
+     * succeeds
      */
-    private static void updateFunctionDeployment(Document document, ResultSet entry, double cost) {
-        Connection connection = getConnection();
-        PreparedStatement preparedStatement = null;
+    public static synchronized boolean enableSnapshot(long refreshInterval) {
+        disableSnapshot();
+        snapshotRefresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metadata-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        boolean loaded = refreshSnapshot();
+        snapshotRefresher.scheduleWithFixedDelay(MariaDBAccess::refreshSnapshot, refreshInterval, refreshInterval,
+                TimeUnit.MILLISECONDS);
+        return loaded;
+    }
 
-        String function_id = document.getString("function_id");
-        Long RTT = document.getLong("RTT");
-        Boolean success = document.getBoolean("success");
-        Integer maxLoopCounter = document.getInteger("maxLoopCounter");
-        int runtime = getRuntime(document);
+    /**
+     * Stops refreshing the snapshot, all lookups query the metadata DB again.
+     */
+    public static synchronized void disableSnapshot() {
+        if (snapshotRefresher != null) {
+            snapshotRefresher.shutdownNow();
+            snapshotRefresher = null;
+        }
+        snapshot = null;
+    }
 
+    /**
+     * Reads a new snapshot and replaces the current one. The current snapshot is kept if the new one cannot be read.
+     *
+     * @return true if the snapshot was replaced
+     */
+    public static boolean refreshSnapshot() {
+        long start = System.nanoTime();
         try {
-            // get the required fields
-            int invocations = entry.getInt("invocations");
-            double avgRTT = entry.getDouble("avgRTT");
-            double avgRuntime = entry.getDouble("avgRuntime");
-            double avgCost = entry.getDouble("avgCost");
-            double successRate = entry.getDouble("successRate");
-            int avgLoopCounter = entry.getInt("avgLoopCounter");
-            int successfulInvocations = (int) Math.round(successRate * invocations);
-
-            // if the cost is -1 or 0, set it to the average cost to prevent wrong values
-            if (cost == -1 || cost == 0) {
-                cost = avgCost;
-            }
-            if (runtime == -1) {
-                runtime = (int) avgRuntime;
-            }
-
-            // update the fields
-            double newAvgRTT = ((avgRTT * invocations) + RTT) / (invocations + 1);
-            double newRuntime = ((avgRuntime * invocations) + runtime) / (invocations + 1);
-            double newCost = ((avgCost * invocations) + cost) / (invocations + 1);
-            if (success) {
-                successfulInvocations++;
-            }
-            double newSuccessRate = (double) successfulInvocations / (double) (invocations + 1);
-            // if the function was not executed in a loop
-            if (maxLoopCounter == null || maxLoopCounter == -1) {
-                maxLoopCounter = 0;
+            MetadataSnapshot loaded = new MetadataSnapshot(executeQuery("SELECT * FROM functiondeployment"),
+                    executeQuery("SELECT * FROM functionimplementation"), executeQuery("SELECT * FROM provider"),
+                    executeQuery("SELECT * FROM region"), executeQuery("SELECT * FROM cpu"));
+            synchronized (MariaDBAccess.class) {
+                // a snapshot that is read while it is disabled is discarded
+                if (snapshotRefresher != null) {
+                    snapshot = loaded;
+                }
             }
-            // TODO change from ceil to round?
-            int newAvgLoopCounter = (int) Math.ceil(((avgLoopCounter * invocations) + maxLoopCounter) / (double) (invocations + 1));
-
-            // update the functiondeployment table
-            String updateFunctionDeployment = "UPDATE functiondeployment SET avgRTT = ?, avgRuntime = ?, avgCost = ?, "
-                    + "successRate = ?, avgLoopCounter = ?, invocations = ? WHERE KMS_Arn = ?";
-            preparedStatement = connection.prepareStatement(updateFunctionDeployment);
-            preparedStatement.setDouble(1, newAvgRTT);
-            preparedStatement.setDouble(2, newRuntime);
-            preparedStatement.setDouble(3, newCost);
-            preparedStatement.setDouble(4, newSuccessRate);
-            preparedStatement.setInt(5, newAvgLoopCounter);
-            preparedStatement.setInt(6, (invocations + 1));
-            preparedStatement.setString(7, function_id);
-            preparedStatement.executeUpdate();
-
+            return true;
         } catch (SQLException exception) {
+            Metrics.error("mariadb.snapshot", exception);
             exception.printStackTrace();
+        } finally {
+            Metrics.recordLatency("mariadb.snapshot", start);
         }
+        return false;
     }
 
     /**
-     * Update the metadata DB for the given document.
-     *
-     * @param document to update
+     * @return the current snapshot of the metadata DB, null if {@link #enableSnapshot(long)} was not called or no
+     * snapshot could be read yet
      */
-    private static void updateMetadata(Document document) {
-        Connection connection = getConnection();
-        PreparedStatement preparedStatement = null;
-        String functionId = document.getString("function_id");
-        double cost = document.getDouble("cost");
-
-        // get the functiondeployment table entry
-        ResultSet entry = getFunctionIdEntry(functionId);
+    public static MetadataSnapshot getSnapshot() {
+        return snapshot;
+    }
 
-        try {
-            // get the first entry
+    /**
+     * Gets a set of CPUs for the given provider.
+     *
+     * @param provider to get the CPUs from
+     *
+     * @return a set of CPUs for the given provider
+     */
+    public static ResultSet getCpuByProvider(Provider provider, int parallel, int percentage) {
+        MetadataSnapshot current = snapshot;
+        if (current != null) {
+            return fromSnapshot(current, "cpu", current.getCpus(provider, parallel, percentage));
+        }
+        ResultSet resultSet = null;
+        MetadataRow providerEntry = getProviderRow(provider);
+        if (providerEntry == null) {
+            return null;
+        }
+        try {
+            int provider_id = providerEntry.getInt("id");
+            resultSet = executeQuery(CPU_BY_PROVIDER, provider_id, percentage, percentage, parallel);
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+        return resultSet;
+    }
+
+    /**
+     * Gets a set of CPUs for the given provider and region.
+     *
+     * @param provider to get the CPUs from
+     * @param region   to get the CPUs from
+     *
+     * @return a set of CPUs for the given provider and region
+     */
+    public static ResultSet getCpuByProviderAndRegion(Provider provider, String region, int parallel, int percentage) {
+        MetadataSnapshot current = snapshot;
+        if (current != null) {
+            return fromSnapshot(current, "cpu", current.getCpus(provider, region, parallel, percentage));
+        }
+        ResultSet resultSet = null;
+        MetadataRow providerEntry = getProviderRow(provider);
+        MetadataRow regionEntry = getRegionRow(region, provider);
+        if (providerEntry == null || regionEntry == null) {
+            return null;
+        }
+        try {
+            int provider_id = providerEntry.getInt("id");
+            int region_id = regionEntry.getInt("id");
+            resultSet = executeQuery(CPU_BY_PROVIDER_AND_REGION, provider_id, region_id, percentage, percentage,
+                    parallel);
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+        return resultSet;
+    }
+
+    /**
+     * Calculates the cost for the given parameters with the cached prices of the {@link #getCostModel() cost model}.
+     *
+     * @param memorySize to calculate
+     * @param runtime    to calculate
+     * @param provider   to calculate
+     *
+     * @return the cost
+     */
+    public static double calculateCost(int memorySize, double runtime, Provider provider) {
+        return costModel.calculateCost(memorySize, runtime, provider);
+    }
+
+    /**
+     * Calculates the cost for the given parameters with the given prices.
+     *
+     * @param memorySize to calculate
+     * @param runtime    to calculate
+     * @param provider   to calculate
+     * @param price      the prices of the provider
+     *
+     * @return the cost
+     */
+    static double calculateCost(int memorySize, double runtime, Provider provider, ProviderPrice price) {
+        return CostModel.calculateCost(memorySize, runtime, provider, price);
+    }
+
+    /**
+     * Reads the prices of all providers.
+     *
+     * @return the prices per provider, providers without entry are missing
+     *
+     * @throws SQLException if the provider table cannot be read
+     */
+    static Map<Provider, ProviderPrice> readProviderPrices() throws SQLException {
+        Map<Provider, ProviderPrice> prices = new EnumMap<>(Provider.class);
+        ResultSet resultSet = executeQuery("SELECT * FROM provider");
+        while (resultSet.next()) {
+            for (Provider provider : Provider.values()) {
+                if (provider.name().equals(resultSet.getString("name"))) {
+                    prices.put(provider, ProviderPrice.fromResultSet(resultSet));
+                }
+            }
+        }
+        return prices;
+    }
+
+    /**
+     * @return the cost model used by {@link #calculateCost(int, double, Provider)}, which reads the provider prices
+     * again every minute
+     */
+    public static CostModel getCostModel() {
+        return costModel;
+    }
+
+    /**
+     * Gets the running averages of the entry with the given id in the given table.
+     *
+     * @param table to get the entry from, either functionimplementation or functiontype
+     * @param id    of the entry
+     *
+     * @return the running averages of the entry
+     *
+     * @throws SQLException if the entry cannot be read
+     */
+    private static MetadataEntry getMetadataEntry(String table, int id) throws SQLException {
+        String query = "SELECT * FROM " + table + " WHERE id = ?";
+        ResultSet resultSet = executeQuery(query, id);
+        // get the first entry
+        resultSet.next();
+        return MetadataEntry.fromResultSet(resultSet, false);
+    }
+
+    /**
+     * Writes the running averages of the entry with the given id to the given table.
+     *
+     * @param table to write the entry to, either functionimplementation or functiontype
+     * @param id    of the entry
+     * @param entry the running averages to write
+     *
+     * @throws SQLException if the entry cannot be written
+     */
+    private static void writeMetadataEntry(String table, int id, MetadataEntry entry) throws SQLException {
+        String update = "UPDATE " + table + " SET avgRTT = ?, avgCost = ?, successRate = ?, invocations = ? WHERE "
+                + "id = ?";
+        executeUpdate(update, entry.getAvgRTT(), entry.getAvgCost(), entry.getSuccessRate(), entry.getInvocations(), id);
+    }
+
+    /**
+     * Writes the running averages of the entry with the given function id to the functiondeployment table.
+     *
+     * @param functionId of the entry
+     * @param entry      the running averages to write
+     *
+     * @throws SQLException if the entry cannot be written
+     */
+    private static void writeFunctionDeployment(String functionId, MetadataEntry entry) throws SQLException {
+        String update = "UPDATE functiondeployment SET avgRTT = ?, avgRuntime = ?, avgCost = ?, "
+                + "successRate = ?, avgLoopCounter = ?, invocations = ? WHERE KMS_Arn = ?";
+        executeUpdate(update, entry.getAvgRTT(), entry.getAvgRuntime(), entry.getAvgCost(), entry.getSuccessRate(),
+                entry.getAvgLoopCounter(), entry.getInvocations(), functionId);
+    }
+
+    /**
+     * Gets the lock guarding the entry with the given id in the given table.
+     *
+     * @param table of the entry
+     * @param id    of the entry
+     *
+     * @return the lock of the entry
+     */
+    private static Object getEntryLock(String table, int id) {
+        return entryLocks[Math.floorMod(31 * table.hashCode() + id, entryLocks.length)];
+    }
+
+    /**
+     * Updates the functionType table in the metadataDB for the given log entry.
+     *
+     * @param log            to get the values
+     * @param functionTypeId to get the entry
+     */
+    private static void updateFunctionType(UpdateEntry log, int functionTypeId, double cost) {
+        synchronized (getEntryLock("functiontype", functionTypeId)) {
+            try {
+                MetadataEntry entry = getMetadataEntry("functiontype", functionTypeId);
+                entry.add(log.getRTT(), cost, log.isSuccess());
+                writeMetadataEntry("functiontype", functionTypeId, entry);
+            } catch (SQLException exception) {
+                exception.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Updates the functionimplementation table in the metadataDB for the given log entry.
+     *
+     * @param log                      to get the values
+     * @param functionImplementationId to get the entry
+     */
+    private static void updateFunctionImplementation(UpdateEntry log, int functionImplementationId, double cost) {
+        synchronized (getEntryLock("functionimplementation", functionImplementationId)) {
+            try {
+                MetadataEntry entry = getMetadataEntry("functionimplementation", functionImplementationId);
+                entry.add(log.getRTT(), cost, log.isSuccess());
+                writeMetadataEntry("functionimplementation", functionImplementationId, entry);
+            } catch (SQLException exception) {
+                exception.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Updates the functiondeployment table in the metadataDB for the given log entry.
+     *
+     * @param log to get the values
+     */
+    private static void updateFunctionDeployment(UpdateEntry log, double cost) {
+        String functionId = log.getFunctionId();
+        try {
+            // get the functiondeployment table entry
+            ResultSet entry = getFunctionIdEntry(functionId);
             entry.next();
-            // get the required fields
-            int memorySize = entry.getInt("memorySize");
-            int functionImplementationId = entry.getInt("functionImplementation_id");
-            int functionTypeId = getFunctionTypeId(functionImplementationId);
+            MetadataEntry metadataEntry = MetadataEntry.fromResultSet(entry, true);
+            metadataEntry.add(log.getRTT(), log.getRuntime(), cost, log.isSuccess(), log.getMaxLoopCounter());
+            writeFunctionDeployment(functionId, metadataEntry);
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+    }
+
+    /**
+     * Update the metadata DB for the given log entry.
+     *
+     * @param log        to update
+     * @param deployment the ids of the functiondeployment entry of the log entry
+     */
+    private static void updateMetadata(UpdateEntry log, DeploymentInfo deployment) {
+        double cost = getCost(log, deployment);
+
+        updateFunctionDeployment(log, cost);
+        updateFunctionImplementation(log, deployment.getFunctionImplementationId(), cost);
+        updateFunctionType(log, deployment.getFunctionTypeId(), cost);
+    }
+
+    /**
+     * Update the metadata DB for the given log entry with one {@link #INCREMENT_DEPLOYMENT} and two
+     * {@link #INCREMENT_ENTRY} statements.
+     *
+     * @param log        to update
+     * @param deployment the ids of the functiondeployment entry of the log entry
+     */
+    private static void updateMetadataAtomic(UpdateEntry log, DeploymentInfo deployment) {
+        Object[][] increments = getIncrements(log, deployment);
+        try {
+            executeUpdate(INCREMENT_DEPLOYMENT, increments[0]);
+            executeUpdate(INCREMENT_IMPLEMENTATION, increments[1]);
+            executeUpdate(INCREMENT_TYPE, increments[2]);
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+        }
+    }
+
+    /**
+     * Gets the parameters of the statements adding the given log entry to the metadata DB.
+     *
+     * @param log        to add
+     * @param deployment the ids of the functiondeployment entry of the log entry
+     *
+     * @return the parameters of {@link #INCREMENT_DEPLOYMENT}, {@link #INCREMENT_IMPLEMENTATION} and
+     * {@link #INCREMENT_TYPE}
+     */
+    private static Object[][] getIncrements(UpdateEntry log, DeploymentInfo deployment) {
+        double cost = getCost(log, deployment);
+        // unknown values are passed as null and replaced by the current averages in the statement
+        Double knownCost = cost == -1 || cost == 0 ? null : cost;
+        Integer runtime = log.getRuntime() == -1 ? null : log.getRuntime();
+        int maxLoopCounter = log.getMaxLoopCounter() == -1 ? 0 : log.getMaxLoopCounter();
+        int success = log.isSuccess() ? 1 : 0;
+        return new Object[][]{
+                {log.getRTT(), runtime, knownCost, success, maxLoopCounter, log.getFunctionId()},
+                {log.getRTT(), knownCost, success, deployment.getFunctionImplementationId()},
+                {log.getRTT(), knownCost, success, deployment.getFunctionTypeId()}
+        };
+    }
+
+    /**
+     * Gets the cost of the given log entry, calculates it with the prices of the {@link #getCostModel() cost model} if
+     * it is unknown.
+     *
+     * @param log        to get the cost
+     * @param deployment the ids of the functiondeployment entry of the log entry
+     *
+     * @return the cost
+     */
+    private static double getCost(UpdateEntry log, DeploymentInfo deployment) {
+        double cost = log.getCost();
+        if (cost == -1) {
+            Provider provider = Utils.detectProvider(log.getFunctionId());
+            // stays -1 if there are no prices for the provider
+            cost = costModel.calculateCost(deployment.getMemorySize(), (double) log.getRTT(), provider);
+        }
+        return cost;
+    }
+
+    /**
+     * Gets the ids required to update the metadata DB for the functiondeployment entry with the given function id.
+     *
+     * @param functionId to get the entry
+     *
+     * @return the ids of the entry, null if there is no entry with the given function id
+     *
+     * @throws SQLException if the entry cannot be read
+     */
+    private static DeploymentInfo getDeploymentInfo(String functionId) throws SQLException {
+        // the functionType_id is joined from the functionimplementation entry, so one query is enough
+        String query = "SELECT d.memorySize, d.functionImplementation_id, i.functionType_id FROM functiondeployment d "
+                + "LEFT JOIN functionimplementation i ON i.id = d.functionImplementation_id WHERE d.KMS_Arn = ?";
+        ResultSet entry = executeQuery(query, functionId);
+        if (entry.next()) {
+            int functionTypeId = entry.getInt("functionType_id");
+            if (entry.wasNull()) {
+                functionTypeId = -1;
+            }
+            return new DeploymentInfo(entry.getInt("memorySize"), entry.getInt("functionImplementation_id"),
+                    functionTypeId);
+        }
+        return null;
+    }
+
+    /**
+     * Gets the ids of the functiondeployment entry with the given function id from the cache, reads them from the
+     * metadata DB if they are not cached yet. Function ids without an entry are only remembered for
+     * {@link #DEPLOYMENT_MISS_TTL}.
+     *
+     * @param functionId to get the entry
+     *
+     * @return the ids of the entry, null if there is no entry with the given function id
+     *
+     * @throws SQLException if the entry cannot be read
+     */
+    private static DeploymentInfo getCachedDeploymentInfo(String functionId) throws SQLException {
+        DeploymentInfo deployment = deploymentCache.get(functionId);
+        if (deployment != null) {
+            return deployment;
+        }
+        Long missExpiry = deploymentMisses.get(functionId);
+        if (missExpiry != null && System.nanoTime() - missExpiry < 0) {
+            return null;
+        }
+        deployment = getDeploymentInfo(functionId);
+        if (deployment == null) {
+            deploymentMisses.put(functionId, System.nanoTime() + DEPLOYMENT_MISS_TTL);
+        } else {
+            deploymentCache.put(functionId, deployment);
+            deploymentMisses.remove(functionId);
+        }
+        return deployment;
+    }
+
+    /**
+     * Clears the cached functiondeployment ids. Is called at the start of every update run, so entries added to the
+     * metadata DB in the meantime are found. The provider prices are read again by the cost model every minute.
+     */
+    public static void clearCache() {
+        deploymentCache.clear();
+        deploymentMisses.clear();
+    }
+
+    /**
+     * Forgets the functiondeployment ids that were not found, so they are read again on the next lookup. Unlike
+     * {@link #clearCache()}, the found entries stay cached.
+     */
+    public static void clearDeploymentMisses() {
+        deploymentMisses.clear();
+    }
+
+    /**
+     * Adds the round trip time of the given log entry to the sketches of its functiondeployment,
+     * functionimplementation and functiontype entry, which are merged into the metadata DB by
+     * {@link #flushSketches()}.
+     *
+     * @param log        to add
+     * @param deployment the ids of the functiondeployment entry of the log entry
+     */
+    private static void addRTT(UpdateEntry log, DeploymentInfo deployment) {
+        long RTT = log.getRTT();
+        deploymentSketches.computeIfAbsent(log.getFunctionId(), k -> new LatencySketch()).add(RTT);
+        implementationSketches.computeIfAbsent(deployment.getFunctionImplementationId(), k -> new LatencySketch())
+                .add(RTT);
+        if (deployment.getFunctionTypeId() != -1) {
+            typeSketches.computeIfAbsent(deployment.getFunctionTypeId(), k -> new LatencySketch()).add(RTT);
+        }
+    }
+
+    /**
+     * Merges the round trip times of the log entries updated since the last call into the sketches stored in the
+     * {@code rttSketch} column of the functiondeployment, functionimplementation and functiontype entries. Each entry
+     * is locked while its sketch is merged, so concurrent flushes, also from other processes, lose no counts. Sketches
+     * that cannot be written are kept for the next call.
+     */
+    public static void flushSketches() {
+        flushSketches("functiondeployment", "KMS_Arn", deploymentSketches);
+        flushSketches("functionimplementation", "id", implementationSketches);
+        flushSketches("functiontype", "id", typeSketches);
+    }
+
+    /**
+     * Merges the given sketches into the sketches stored in the given table, one transaction per entry.
+     *
+     * @param table    to write the sketches to
+     * @param column   identifying the entries
+     * @param sketches the sketches to merge, mapped by the value of the column
+     */
+    private static <K> void flushSketches(String table, String column, Map<K, LatencySketch> sketches) {
+        if (sketches.isEmpty()) {
+            return;
+        }
+        String select = "SELECT " + RTT_SKETCH + " FROM " + table + " WHERE " + column + " = ? FOR UPDATE";
+        String update = "UPDATE " + table + " SET " + RTT_SKETCH + " = ? WHERE " + column + " = ?";
+        long start = System.nanoTime();
+        try (Connection connection = openConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement selectStatement = connection.prepareStatement(select);
+                 PreparedStatement updateStatement = connection.prepareStatement(update)) {
+                for (K key : new ArrayList<>(sketches.keySet())) {
+                    LatencySketch sketch = sketches.remove(key);
+                    try {
+                        selectStatement.setObject(1, key);
+                        LatencySketch stored;
+                        try (ResultSet resultSet = selectStatement.executeQuery()) {
+                            if (!resultSet.next()) {
+                                // the entry was deleted in the meantime
+                                connection.rollback();
+                                continue;
+                            }
+                            try {
+                                stored = toSketch(resultSet.getObject(RTT_SKETCH));
+                            } catch (IllegalArgumentException exception) {
+                                // replace a sketch that cannot be read instead of failing every flush
+                                exception.printStackTrace();
+                                stored = new LatencySketch();
+                            }
+                        }
+                        updateStatement.setBytes(1, stored.merge(sketch).toBytes());
+                        updateStatement.setObject(2, key);
+                        updateStatement.executeUpdate();
+                        connection.commit();
+                    } catch (SQLException | RuntimeException exception) {
+                        connection.rollback();
+                        sketches.merge(key, sketch, LatencySketch::merge);
+                        throw exception;
+                    }
+                }
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException | RuntimeException exception) {
+            Metrics.error("mariadb.sketch", exception);
+            exception.printStackTrace();
+        } finally {
+            Metrics.recordLatency("mariadb.sketch", start);
+        }
+    }
+
+    /**
+     * Gets the round trip times of the functiondeployment entry with the given function id. Uses the snapshot if it is
+     * enabled, see {@link #enableSnapshot(long)}.
+     *
+     * @param functionId of the entry
+     *
+     * @return the sketch of the round trip times, empty if the entry has none or does not exist
+     */
+    public static LatencySketch getDeploymentRTTSketch(String functionId) {
+        MetadataSnapshot current = snapshot;
+        if (current != null) {
+            MetadataRow row = current.getDeploymentByFunctionId(functionId);
+            return readSketch(row);
+        }
+        return readSketch("SELECT " + RTT_SKETCH + " FROM functiondeployment WHERE KMS_Arn = ?", functionId);
+    }
+
+    /**
+     * Gets the round trip times of the functionimplementation entry with the given id. Uses the snapshot if it is
+     * enabled, see {@link #enableSnapshot(long)}.
+     *
+     * @param id of the entry
+     *
+     * @return the sketch of the round trip times, empty if the entry has none or does not exist
+     */
+    public static LatencySketch getImplementationRTTSketch(int id) {
+        MetadataSnapshot current = snapshot;
+        if (current != null) {
+            MetadataRow row = current.getImplementationById(id);
+            return readSketch(row);
+        }
+        return readSketch("SELECT " + RTT_SKETCH + " FROM functionimplementation WHERE id = ?", id);
+    }
+
+    /**
+     * Gets the round trip times of the functiontype entry with the given id.
+     *
+     * @param id of the entry
+     *
+     * @return the sketch of the round trip times, empty if the entry has none or does not exist
+     */
+    public static LatencySketch getTypeRTTSketch(int id) {
+        return readSketch("SELECT " + RTT_SKETCH + " FROM functiontype WHERE id = ?", id);
+    }
 
+    /**
+     * Reads a sketch with the given query.
+     *
+     * @param query      selecting the rttSketch column of a single entry
+     * @param parameters of the query
+     *
+     * @return the sketch, empty if there is none
+     */
+    private static LatencySketch readSketch(String query, Object... parameters) {
+        try {
+            ResultSet resultSet = executeQuery(query, parameters);
+            if (resultSet.next()) {
+                return toSketch(resultSet.getObject(RTT_SKETCH));
+            }
+        } catch (SQLException | IllegalArgumentException exception) {
+            exception.printStackTrace();
+        }
+        return new LatencySketch();
+    }
 
-            if (cost == -1) {
-                double rtt = (double) document.getLong("RTT");
-                Provider provider = Utils.detectProvider(functionId);
-                cost = calculateCost(memorySize, rtt, provider);
+    /**
+     * Reads the sketch of the given row of the snapshot.
+     *
+     * @param row of a functiondeployment or functionimplementation entry, null if there is none
+     *
+     * @return the sketch, empty if there is none
+     */
+    private static LatencySketch readSketch(MetadataRow row) {
+        if (row != null) {
+            try {
+                return toSketch(row.getObject(RTT_SKETCH));
+            } catch (SQLException | IllegalArgumentException exception) {
+                exception.printStackTrace();
             }
+        }
+        return new LatencySketch();
+    }
 
-            updateFunctionDeployment(document, entry, cost);
-            updateFunctionImplementation(document, functionImplementationId, cost);
-            updateFunctionType(document, functionTypeId, cost);
+    /**
+     * Deserializes the value of a rttSketch column.
+     *
+     * @param value the byte array or BLOB of the column, null if there is no sketch
+     *
+     * @return the sketch, empty if there is none
+     *
+     * @throws SQLException             if the BLOB cannot be read
+     * @throws IllegalArgumentException if the value is not a serialized sketch
+     */
+    private static LatencySketch toSketch(Object value) throws SQLException {
+        if (value instanceof Blob) {
+            Blob blob = (Blob) value;
+            return LatencySketch.fromBytes(blob.getBytes(1, (int) blob.length()));
+        }
+        if (value != null && !(value instanceof byte[])) {
+            throw new IllegalArgumentException("The " + RTT_SKETCH + " column holds a " + value.getClass().getName()
+                    + " instead of a sketch.");
+        }
+        return LatencySketch.fromBytes((byte[]) value);
+    }
 
+    /**
+     * Updates the metadata DB with all given log entries and sets their 'done'-fields.
+     * <p>
+     * In contrast to {@link #updateMD}, the invocations are first collected per functiondeployment,
+     * functionimplementation and functiontype entry, so each entry is read and written only once. The resulting
+     * averages are the same as if the documents were updated one after another.
+     *
+     * @param logs the log entries to update
+     */
+    public static void updateAggregated(Iterable<UpdateEntry> logs) {
+        Map<String, MetadataDelta> deploymentDeltas = new LinkedHashMap<>();
+        Map<Integer, MetadataDelta> implementationDeltas = new LinkedHashMap<>();
+        Map<Integer, MetadataDelta> typeDeltas = new LinkedHashMap<>();
+        List<ObjectId> done = new ArrayList<>();
+        List<ObjectId> ignored = new ArrayList<>();
+
+        for (UpdateEntry log : logs) {
+            String functionId = log.getFunctionId();
+            if (functionId == null) {
+                continue;
+            }
+            DeploymentInfo deployment;
+            try {
+                deployment = getCachedDeploymentInfo(functionId);
+            } catch (SQLException exception) {
+                // the log entry stays undone and is updated again in the next run
+                exception.printStackTrace();
+                continue;
+            }
+            if (deployment == null) {
+                if (print) {
+                    System.out.println("No entry for function with id '" + functionId + "' found. Skipped.");
+                }
+                ignored.add(log.getId());
+                countSkipped();
+                continue;
+            }
+
+            long RTT = log.getRTT();
+            boolean success = log.isSuccess();
+            int runtime = log.getRuntime();
+            int maxLoopCounter = log.getMaxLoopCounter();
+            double cost = getCost(log, deployment);
+
+            deploymentDeltas.computeIfAbsent(functionId, k -> new MetadataDelta())
+                    .add(RTT, runtime, cost, success, maxLoopCounter);
+            implementationDeltas.computeIfAbsent(deployment.getFunctionImplementationId(), k -> new MetadataDelta())
+                    .add(RTT, runtime, cost, success, maxLoopCounter);
+            typeDeltas.computeIfAbsent(deployment.getFunctionTypeId(), k -> new MetadataDelta())
+                    .add(RTT, runtime, cost, success, maxLoopCounter);
+            addRTT(log, deployment);
+            done.add(log.getId());
+            countUpdated();
+        }
+
+        for (Map.Entry<String, MetadataDelta> delta : deploymentDeltas.entrySet()) {
+            if (print) {
+                System.out.println("Updating entries for function with id '" + delta.getKey() + "' ("
+                        + delta.getValue().getCount() + " invocations).");
+            }
+            try {
+                ResultSet entry = getFunctionIdEntry(delta.getKey());
+                entry.next();
+                MetadataEntry metadataEntry = MetadataEntry.fromResultSet(entry, true);
+                delta.getValue().applyTo(metadataEntry, true);
+                writeFunctionDeployment(delta.getKey(), metadataEntry);
+            } catch (SQLException exception) {
+                exception.printStackTrace();
+            }
+        }
+        applyDeltas("functionimplementation", implementationDeltas);
+        applyDeltas("functiontype", typeDeltas);
+        Metrics.recordValue("mariadb.aggregated.logs", done.size() + ignored.size());
+        Metrics.recordValue("mariadb.aggregated.entries",
+                deploymentDeltas.size() + implementationDeltas.size() + typeDeltas.size());
+
+        // mark the log entries as done or ignored
+        done.forEach(id -> MongoDBAccess.markAsDone(id, 1L));
+        ignored.forEach(id -> MongoDBAccess.markAsDone(id, 2L));
+        MongoDBAccess.flushDone();
+    }
+
+    /**
+     * Updates the metadata DB with all given log entries on the given amount of threads and marks their
+     * 'done'-fields.
+     * <p>
+     * The log entries are partitioned by their function id, so all log entries of a functiondeployment entry are
+     * updated by the same thread in their original order. Each thread uses its own connections from the connection
+     * pool.
+     *
+     * @param logs    the log entries to update
+     * @param threads the amount of threads used to update the log entries
+     *
+     * @throws IllegalArgumentException if the amount of threads is not positive
+     */
+    public static void updateParallel(Iterable<UpdateEntry> logs, int threads) {
+        try {
+            new PartitionedUpdate(threads, MariaDBAccess::update).run(logs);
+        } finally {
+            // also mark the updated log entries if reading further log entries failed
+            MongoDBAccess.flushDone();
+        }
+    }
+
+    /**
+     * Updates the metadata DB with all given log entries on the given amount of threads like
+     * {@link #updateParallel(Iterable, int)}, but with {@link #updateAtomic(UpdateEntry)} instead of reading and
+     * writing the entries.
+     *
+     * @param logs    the log entries to update
+     * @param threads the amount of threads used to update the log entries
+     *
+     * @throws IllegalArgumentException if the amount of threads is not positive
+     */
+    public static void updateAtomic(Iterable<UpdateEntry> logs, int threads) {
+        try {
+            new PartitionedUpdate(threads, MariaDBAccess::updateAtomic).run(logs);
+        } finally {
+            // also mark the updated log entries if reading further log entries failed
+            MongoDBAccess.flushDone();
+        }
+    }
+
+    /**
+     * Updates the metadata DB with all given log entries in chunks of {@code batchSize} log entries and sets their
+     * 'done'-fields.
+     * <p>
+     * The statements of {@link #updateAtomic(UpdateEntry)} are sent as JDBC batches and each chunk is committed in one
+     * transaction. The 'done'-fields of a chunk are written only after its commit, so a chunk that fails is rolled
+     * back completely and updated again in the next run.
+     *
+     * @param logs the log entries to update
+     */
+    public static void updateBatched(Iterable<UpdateEntry> logs) {
+        try {
+            // reads the batch size
+            getDataSource();
         } catch (SQLException exception) {
             exception.printStackTrace();
+            return;
+        }
+        List<UpdateEntry> chunk = new ArrayList<>();
+        for (UpdateEntry log : logs) {
+            if (log.getFunctionId() == null) {
+                continue;
+            }
+            chunk.add(log);
+            if (chunk.size() >= batchSize) {
+                writeBatch(chunk);
+                chunk.clear();
+            }
         }
+        writeBatch(chunk);
+    }
+
+    /**
+     * Writes the given log entries to the metadata DB in one transaction and sets their 'done'-fields after the
+     * commit.
+     *
+     * @param logs the log entries to update
+     */
+    private static void writeBatch(List<UpdateEntry> logs) {
+        if (logs.isEmpty()) {
+            return;
+        }
+        List<ObjectId> done = new ArrayList<>();
+        List<ObjectId> ignored = new ArrayList<>();
+        Map<UpdateEntry, DeploymentInfo> deploymentsOfDone = new IdentityHashMap<>();
+        long start = System.nanoTime();
+        try (Connection connection = openConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement deployments = connection.prepareStatement(INCREMENT_DEPLOYMENT);
+                 PreparedStatement implementations = connection.prepareStatement(INCREMENT_IMPLEMENTATION);
+                 PreparedStatement types = connection.prepareStatement(INCREMENT_TYPE)) {
+                for (UpdateEntry log : logs) {
+                    DeploymentInfo deployment = getCachedDeploymentInfo(log.getFunctionId());
+                    if (deployment == null) {
+                        if (print) {
+                            System.out.println("No entry for function with id '" + log.getFunctionId()
+                                    + "' found. Skipped.");
+                        }
+                        ignored.add(log.getId());
+                        continue;
+                    }
+                    Object[][] increments = getIncrements(log, deployment);
+                    addBatch(deployments, increments[0]);
+                    addBatch(implementations, increments[1]);
+                    addBatch(types, increments[2]);
+                    done.add(log.getId());
+                    deploymentsOfDone.put(log, deployment);
+                }
+                int rows = 0;
+                for (PreparedStatement statement : Arrays.asList(deployments, implementations, types)) {
+                    for (int count : statement.executeBatch()) {
+                        rows += Math.max(count, 0);
+                    }
+                }
+                connection.commit();
+                Metrics.mark("mariadb.rows.written", rows);
+            } catch (SQLException exception) {
+                connection.rollback();
+                throw exception;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException exception) {
+            Metrics.error("mariadb.batch", exception);
+            exception.printStackTrace();
+            // the log entries stay undone and are updated again in the next run
+            return;
+        } finally {
+            Metrics.recordLatency("mariadb.batch", start);
+        }
+        Metrics.recordValue("mariadb.batch.size", logs.size());
+
+        // add the round trip times only after the commit, a failed chunk is updated again in the next run
+        deploymentsOfDone.forEach(MariaDBAccess::addRTT);
+        // mark the log entries as done or ignored only after the commit
+        for (ObjectId id : done) {
+            countUpdated();
+            MongoDBAccess.markAsDone(id, 1L);
+        }
+        for (ObjectId id : ignored) {
+            countSkipped();
+            MongoDBAccess.markAsDone(id, 2L);
+        }
+        MongoDBAccess.flushDone();
+    }
+
+    /**
+     * Sets the given parameters and adds them to the batch of the given statement.
+     *
+     * @param statement  to add the parameters to
+     * @param parameters to set
+     *
+     * @throws SQLException if the parameters cannot be set
+     */
+    private static void addBatch(PreparedStatement statement, Object... parameters) throws SQLException {
+        for (int i = 0; i < parameters.length; i++) {
+            statement.setObject(i + 1, parameters[i]);
+        }
+        statement.addBatch();
+    }
+
+    /**
+     * Applies the given deltas to the entries of the given table.
+     *
+     * @param table  to update, either functionimplementation or functiontype
+     * @param deltas the deltas mapped by the id of the entry
+     */
+    private static void applyDeltas(String table, Map<Integer, MetadataDelta> deltas) {
+        for (Map.Entry<Integer, MetadataDelta> delta : deltas.entrySet()) {
+            synchronized (getEntryLock(table, delta.getKey())) {
+                try {
+                    MetadataEntry entry = getMetadataEntry(table, delta.getKey());
+                    delta.getValue().applyTo(entry, false);
+                    writeMetadataEntry(table, delta.getKey(), entry);
+                } catch (SQLException exception) {
+                    exception.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes all connections of the connection pool.
+     */
+    public static synchronized void close() {
+        disableSnapshot();
+        if (sharedConnection != null) {
+            try {
+                sharedConnection.close();
+            } catch (SQLException exception) {
+                exception.printStackTrace();
+            }
+            sharedConnection = null;
+        }
+        if (dataSource instanceof MariaDbPoolDataSource) {
+            ((MariaDbPoolDataSource) dataSource).close();
+        }
+        dataSource = null;
+    }
+
+    /**
+     * Counts an updated log entry.
+     */
+    private static void countUpdated() {
+        updated.incrementAndGet();
+        Metrics.mark("mariadb.logs.updated", 1);
+    }
+
+    /**
+     * Counts a skipped log entry.
+     */
+    private static void countSkipped() {
+        skipped.incrementAndGet();
+        Metrics.mark("mariadb.logs.skipped", 1);
     }
 
     public static void setPrint(boolean print) {
@@ -668,15 +1723,15 @@ public class MariaDBAccess {
     }
 
     public static long getUpdated() {
-        return updated;
+        return updated.get();
     }
 
     public static long getSkipped() {
-        return skipped;
+        return skipped.get();
     }
 
     public static void resetCounters() {
-        updated = 0;
-        skipped = 0;
+        updated.set(0);
+        skipped.set(0);
     }
 }
@@ -0,0 +1,67 @@
+package at.uibk.dps.databases;
+
+import java.util.Arrays;
+
+/**
+ * Collects the invocations of a single functiondeployment, functionimplementation or functiontype entry so that they
+ * can be applied to the metadata DB with one write.
+ * <p>
+ * The invocations are kept in arrival order and folded one by one, since the running averages round the successful
+ * invocations and replace unknown costs with the current average after every single invocation.
+ */
+class MetadataDelta {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int count;
+    private long[] RTTs = new long[INITIAL_CAPACITY];
+    private int[] runtimes = new int[INITIAL_CAPACITY];
+    private double[] costs = new double[INITIAL_CAPACITY];
+    private boolean[] successes = new boolean[INITIAL_CAPACITY];
+    private int[] maxLoopCounters = new int[INITIAL_CAPACITY];
+
+    /**
+     * Adds an invocation to the delta.
+     *
+     * @param RTT            the round trip time of the invocation
+     * @param runtime        the runtime of the invocation, -1 if unknown
+     * @param cost           the cost of the invocation, -1 or 0 if unknown
+     * @param success        whether the invocation was successful
+     * @param maxLoopCounter the maximum loop counter of the invocation, -1 if not executed in a loop
+     */
+    void add(long RTT, int runtime, double cost, boolean success, int maxLoopCounter) {
+        if (count == RTTs.length) {
+            int capacity = count * 2;
+            RTTs = Arrays.copyOf(RTTs, capacity);
+            runtimes = Arrays.copyOf(runtimes, capacity);
+            costs = Arrays.copyOf(costs, capacity);
+            successes = Arrays.copyOf(successes, capacity);
+            maxLoopCounters = Arrays.copyOf(maxLoopCounters, capacity);
+        }
+        RTTs[count] = RTT;
+        runtimes[count] = runtime;
+        costs[count] = cost;
+        successes[count] = success;
+        maxLoopCounters[count] = maxLoopCounter;
+        count++;
+    }
+
+    /**
+     * Folds all invocations of the delta into the given entry.
+     *
+     * @param entry      to apply the delta to
+     * @param deployment true if the entry belongs to the functiondeployment table
+     */
+    void applyTo(MetadataEntry entry, boolean deployment) {
+        for (int i = 0; i < count; i++) {
+            if (deployment) {
+                entry.add(RTTs[i], runtimes[i], costs[i], successes[i], maxLoopCounters[i]);
+            } else {
+                entry.add(RTTs[i], costs[i], successes[i]);
+            }
+        }
+    }
+
+    int getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,115 @@
+package at.uibk.dps.databases;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Running averages of an entry in the functiondeployment, functionimplementation or functiontype table of the
+ * metadata DB.
+ */
+class MetadataEntry {
+    private int invocations;
+    private double avgRTT;
+    private double avgRuntime;
+    private double avgCost;
+    private double successRate;
+    private int avgLoopCounter;
+
+    /**
+     * Reads the running averages from the current row of the given ResultSet.
+     *
+     * @param resultSet  positioned on the row to read
+     * @param deployment true if the row belongs to the functiondeployment table
+     *
+     * @return the running averages of the row
+     *
+     * @throws SQLException if a column cannot be read
+     */
+    static MetadataEntry fromResultSet(ResultSet resultSet, boolean deployment) throws SQLException {
+        MetadataEntry entry = new MetadataEntry();
+        entry.invocations = resultSet.getInt("invocations");
+        entry.avgRTT = resultSet.getDouble("avgRTT");
+        entry.avgCost = resultSet.getDouble("avgCost");
+        entry.successRate = resultSet.getDouble("successRate");
+        if (deployment) {
+            entry.avgRuntime = resultSet.getDouble("avgRuntime");
+            entry.avgLoopCounter = resultSet.getInt("avgLoopCounter");
+        }
+        return entry;
+    }
+
+    /**
+     * Adds a single invocation to the averages of a functionimplementation or functiontype entry.
+     *
+     * @param RTT     the round trip time of the invocation
+     * @param cost    the cost of the invocation, -1 or 0 if unknown
+     * @param success whether the invocation was successful
+     */
+    void add(long RTT, double cost, boolean success) {
+        int successfulInvocations = (int) Math.round(successRate * invocations);
+
+        // if the cost is -1 or 0, set it to the average cost to prevent wrong values
+        if (cost == -1 || cost == 0) {
+            cost = avgCost;
+        }
+
+        // update the fields
+        avgRTT = ((avgRTT * invocations) + RTT) / (invocations + 1);
+        avgCost = ((avgCost * invocations) + cost) / (invocations + 1);
+        if (success) {
+            successfulInvocations++;
+        }
+        successRate = (double) successfulInvocations / (double) (invocations + 1);
+        invocations++;
+    }
+
+    /**
+     * Adds a single invocation to the averages of a functiondeployment entry.
+     *
+     * @param RTT            the round trip time of the invocation
+     * @param runtime        the runtime of the invocation, -1 if unknown
+     * @param cost           the cost of the invocation, -1 or 0 if unknown
+     * @param success        whether the invocation was successful
+     * @param maxLoopCounter the maximum loop counter of the invocation, -1 if not executed in a loop
+     */
+    void add(long RTT, int runtime, double cost, boolean success, int maxLoopCounter) {
+        if (runtime == -1) {
+            runtime = (int) avgRuntime;
+        }
+        double newRuntime = ((avgRuntime * invocations) + runtime) / (invocations + 1);
+        // if the function was not executed in a loop
+        if (maxLoopCounter == -1) {
+            maxLoopCounter = 0;
+        }
+        // TODO change from ceil to round?
+        int newAvgLoopCounter = (int) Math.ceil(((avgLoopCounter * invocations) + maxLoopCounter) / (double) (invocations + 1));
+
+        add(RTT, cost, success);
+        avgRuntime = newRuntime;
+        avgLoopCounter = newAvgLoopCounter;
+    }
+
+    int getInvocations() {
+        return invocations;
+    }
+
+    double getAvgRTT() {
+        return avgRTT;
+    }
+
+    double getAvgRuntime() {
+        return avgRuntime;
+    }
+
+    double getAvgCost() {
+        return avgCost;
+    }
+
+    double getSuccessRate() {
+        return successRate;
+    }
+
+    int getAvgLoopCounter() {
+        return avgLoopCounter;
+    }
+}
@@ -0,0 +1,140 @@
+package at.uibk.dps.databases;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable copy of a row of a table of the metadata DB. The getters behave like the ones of {@link ResultSet}:
+ * column names are case insensitive and null values are returned as 0.
+ */
+public final class MetadataRow {
+    private final Map<String, Integer> columns;
+    private final Object[] values;
+
+    private MetadataRow(Map<String, Integer> columns, Object[] values) {
+        this.columns = columns;
+        this.values = values;
+    }
+
+    /**
+     * Copies all remaining rows of the given ResultSet.
+     *
+     * @param resultSet to copy
+     *
+     * @return the rows, in the order of the ResultSet
+     *
+     * @throws SQLException if a row cannot be read
+     */
+    static List<MetadataRow> readAll(ResultSet resultSet) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int count = metaData.getColumnCount();
+        // the column indexes are shared by all rows of the table
+        Map<String, Integer> columns = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 1; i <= count; i++) {
+            columns.putIfAbsent(metaData.getColumnLabel(i), i - 1);
+        }
+        columns = Collections.unmodifiableMap(columns);
+        List<MetadataRow> rows = new ArrayList<>();
+        while (resultSet.next()) {
+            Object[] values = new Object[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = resultSet.getObject(i + 1);
+            }
+            rows.add(new MetadataRow(columns, values));
+        }
+        return rows;
+    }
+
+    /**
+     * @param column the name of the column
+     *
+     * @return the value of the column, null if it is NULL
+     *
+     * @throws IllegalArgumentException if there is no column with the given name
+     */
+    public Object getObject(String column) {
+        Integer index = columns.get(column);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown column '" + column + "'.");
+        }
+        return values[index];
+    }
+
+    /**
+     * @param column the name of the column
+     *
+     * @return the value of the column as String, null if it is NULL
+     */
+    public String getString(String column) {
+        Object value = getObject(column);
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * @param column the name of the column
+     *
+     * @return the value of the column as int, 0 if it is NULL
+     */
+    public int getInt(String column) {
+        Object value = getObject(column);
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        return value == null ? 0 : Integer.parseInt(value.toString().trim());
+    }
+
+    /**
+     * @param column the name of the column
+     *
+     * @return the value of the column as long, 0 if it is NULL
+     */
+    public long getLong(String column) {
+        Object value = getObject(column);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return value == null ? 0 : Long.parseLong(value.toString().trim());
+    }
+
+    /**
+     * @param column the name of the column
+     *
+     * @return the value of the column as double, 0 if it is NULL
+     */
+    public double getDouble(String column) {
+        Object value = getObject(column);
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return value == null ? 0 : Double.parseDouble(value.toString().trim());
+    }
+
+    /**
+     * @param column the name of the column
+     *
+     * @return the value of the column as boolean, false if it is NULL
+     */
+    public boolean getBoolean(String column) {
+        Object value = getObject(column);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).intValue() != 0;
+        }
+        return value != null && (value.toString().equals("1") || Boolean.parseBoolean(value.toString()));
+    }
+
+    /**
+     * @return the values of all columns, in the order of the table, must not be modified
+     */
+    Object[] getValues() {
+        return values;
+    }
+}
@@ -0,0 +1,274 @@
+package at.uibk.dps.databases;
+
+import at.uibk.dps.util.Provider;
+
+import javax.sql.RowSetMetaData;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetFactory;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * An immutable copy of the functiondeployment, functionimplementation, provider, region and cpu tables of the metadata
+ * DB, indexed for the lookups of the scheduler. Lookups involve no I/O. A snapshot never changes, a refresh replaces it
+ * with a new one, see {@link MariaDBAccess#enableSnapshot(long)}.
+ */
+public final class MetadataSnapshot {
+    private final long loadedAt;
+    private final RowSetMetaData deploymentColumns;
+    private final RowSetMetaData implementationColumns;
+    private final RowSetMetaData providerColumns;
+    private final RowSetMetaData regionColumns;
+    private final RowSetMetaData cpuColumns;
+    private final Map<Integer, MetadataRow> deploymentsById = new HashMap<>();
+    private final Map<String, MetadataRow> deploymentsByKmsArn = new HashMap<>();
+    /**
+     * Only holds the deployments with invocations, like {@link MariaDBAccess#getDeploymentsWithImplementationId(int)}.
+     */
+    private final Map<Integer, List<MetadataRow>> invokedDeploymentsByImplementation = new HashMap<>();
+    private final Map<Long, List<MetadataRow>> deploymentsByImplementationAndMemory = new HashMap<>();
+    private final Map<Integer, MetadataRow> implementationsById = new HashMap<>();
+    private final Map<String, MetadataRow> providersByName = new HashMap<>();
+    private final Map<String, MetadataRow> regionsByName = new HashMap<>();
+    private final CpuIndex cpus;
+
+    /**
+     * Copies and indexes the given tables.
+     *
+     * @param deployments     all entries of the functiondeployment table
+     * @param implementations all entries of the functionimplementation table
+     * @param providers       all entries of the provider table
+     * @param regions         all entries of the region table
+     * @param cpus            all entries of the cpu table
+     *
+     * @throws SQLException if the entries cannot be read
+     */
+    MetadataSnapshot(ResultSet deployments, ResultSet implementations, ResultSet providers, ResultSet regions,
+                     ResultSet cpus) throws SQLException {
+        loadedAt = System.currentTimeMillis();
+        deploymentColumns = copyColumns(deployments.getMetaData());
+        implementationColumns = copyColumns(implementations.getMetaData());
+        providerColumns = copyColumns(providers.getMetaData());
+        regionColumns = copyColumns(regions.getMetaData());
+        cpuColumns = copyColumns(cpus.getMetaData());
+
+        for (MetadataRow deployment : MetadataRow.readAll(deployments)) {
+            int implementationId = deployment.getInt("functionImplementation_id");
+            deploymentsById.put(deployment.getInt("id"), deployment);
+            deploymentsByKmsArn.put(deployment.getString("KMS_Arn"), deployment);
+            if (deployment.getInt("invocations") > 0) {
+                invokedDeploymentsByImplementation.computeIfAbsent(implementationId, k -> new ArrayList<>())
+                        .add(deployment);
+            }
+            deploymentsByImplementationAndMemory.computeIfAbsent(
+                    key(implementationId, deployment.getInt("memorySize")), k -> new ArrayList<>()).add(deployment);
+        }
+        for (MetadataRow implementation : MetadataRow.readAll(implementations)) {
+            implementationsById.put(implementation.getInt("id"), implementation);
+        }
+        for (MetadataRow provider : MetadataRow.readAll(providers)) {
+            providersByName.put(provider.getString("name"), provider);
+        }
+        for (MetadataRow region : MetadataRow.readAll(regions)) {
+            regionsByName.put(key(region.getString("region"), region.getString("provider")), region);
+        }
+        this.cpus = new CpuIndex(MetadataRow.readAll(cpus));
+        freeze(invokedDeploymentsByImplementation);
+        freeze(deploymentsByImplementationAndMemory);
+    }
+
+    /**
+     * @param id of the entry
+     *
+     * @return the functiondeployment entry with the given id, null if there is none
+     */
+    public MetadataRow getDeploymentById(int id) {
+        return deploymentsById.get(id);
+    }
+
+    /**
+     * @param functionId the KMS_Arn of the entry
+     *
+     * @return the functiondeployment entry with the given function id, null if there is none
+     */
+    public MetadataRow getDeploymentByFunctionId(String functionId) {
+        return deploymentsByKmsArn.get(functionId);
+    }
+
+    /**
+     * @param functionImplementationId of the entries
+     *
+     * @return the functiondeployment entries with the given functionImplementationId and at least one invocation
+     */
+    public List<MetadataRow> getDeploymentsWithImplementationId(int functionImplementationId) {
+        return invokedDeploymentsByImplementation.getOrDefault(functionImplementationId, Collections.emptyList());
+    }
+
+    /**
+     * @param functionImplementationId of the entries
+     * @param memorySize               of the entries
+     *
+     * @return the functiondeployment entries with the given functionImplementationId and memorySize
+     */
+    public List<MetadataRow> getDeploymentsWithImplementationIdAndMemorySize(int functionImplementationId,
+                                                                            int memorySize) {
+        return deploymentsByImplementationAndMemory.getOrDefault(key(functionImplementationId, memorySize),
+                Collections.emptyList());
+    }
+
+    /**
+     * @param id of the entry
+     *
+     * @return the functionimplementation entry with the given id, null if there is none
+     */
+    public MetadataRow getImplementationById(int id) {
+        return implementationsById.get(id);
+    }
+
+    /**
+     * @param provider of the entry
+     *
+     * @return the provider entry of the given provider, null if there is none
+     */
+    public MetadataRow getProvider(Provider provider) {
+        return providersByName.get(provider.name());
+    }
+
+    /**
+     * @param region   the name of the region
+     * @param provider of the region
+     *
+     * @return the region entry with the given name and provider, null if there is none
+     */
+    public MetadataRow getRegion(String region, Provider provider) {
+        return regionsByName.get(key(region, provider.name()));
+    }
+
+    /**
+     * Finds the cpu entries of the given provider in all regions, like
+     * {@link MariaDBAccess#getCpuByProvider(Provider, int, int)}.
+     *
+     * @param provider   of the entries
+     * @param parallel   of the entries
+     * @param percentage that has to be within from_percentage (inclusive) and to_percentage (exclusive)
+     *
+     * @return the cpu entries, sorted by from_percentage per region, empty if there are none
+     */
+    public List<MetadataRow> getCpus(Provider provider, int parallel, int percentage) {
+        MetadataRow providerEntry = getProvider(provider);
+        if (providerEntry == null) {
+            return Collections.emptyList();
+        }
+        return cpus.find(providerEntry.getInt("id"), parallel, percentage);
+    }
+
+    /**
+     * Finds the cpu entries of the given provider and region, like
+     * {@link MariaDBAccess#getCpuByProviderAndRegion(Provider, String, int, int)}.
+     *
+     * @param provider   of the entries
+     * @param region     the name of the region of the entries
+     * @param parallel   of the entries
+     * @param percentage that has to be within from_percentage (inclusive) and to_percentage (exclusive)
+     *
+     * @return the cpu entries, sorted by from_percentage, empty if there are none
+     */
+    public List<MetadataRow> getCpus(Provider provider, String region, int parallel, int percentage) {
+        MetadataRow providerEntry = getProvider(provider);
+        MetadataRow regionEntry = getRegion(region, provider);
+        if (providerEntry == null || regionEntry == null) {
+            return Collections.emptyList();
+        }
+        return cpus.find(providerEntry.getInt("id"), regionEntry.getInt("id"), parallel, percentage);
+    }
+
+    /**
+     * @return the time the tables were read, in milliseconds since the epoch
+     */
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * Copies the given rows into a ResultSet, for the methods of {@link MariaDBAccess} that return the rows of a
+     * table as ResultSet.
+     *
+     * @param factory to create the ResultSet
+     * @param table   the table of the rows
+     * @param rows    to copy, may be empty
+     *
+     * @return a ResultSet positioned before the first row
+     *
+     * @throws SQLException if the ResultSet cannot be created
+     */
+    ResultSet toResultSet(RowSetFactory factory, String table, Collection<MetadataRow> rows) throws SQLException {
+        CachedRowSet rowSet = factory.createCachedRowSet();
+        rowSet.setMetaData(getColumns(table));
+        if (!rows.isEmpty()) {
+            rowSet.moveToInsertRow();
+            for (MetadataRow row : rows) {
+                Object[] values = row.getValues();
+                for (int i = 0; i < values.length; i++) {
+                    rowSet.updateObject(i + 1, values[i]);
+                }
+                rowSet.insertRow();
+            }
+            rowSet.moveToCurrentRow();
+        }
+        rowSet.beforeFirst();
+        return rowSet;
+    }
+
+    private RowSetMetaData getColumns(String table) {
+        switch (table) {
+            case "functiondeployment":
+                return deploymentColumns;
+            case "functionimplementation":
+                return implementationColumns;
+            case "provider":
+                return providerColumns;
+            case "region":
+                return regionColumns;
+            case "cpu":
+                return cpuColumns;
+            default:
+                throw new IllegalArgumentException("Table '" + table + "' is not part of the snapshot.");
+        }
+    }
+
+    /**
+     * Copies the column definitions of a table, so they can be shared by the ResultSets created from the snapshot.
+     *
+     * @param metaData of the table
+     *
+     * @return the copy
+     *
+     * @throws SQLException if the column definitions cannot be read
+     */
+    private static RowSetMetaData copyColumns(ResultSetMetaData metaData) throws SQLException {
+        RowSetMetaDataImpl columns = new RowSetMetaDataImpl();
+        columns.setColumnCount(metaData.getColumnCount());
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            columns.setColumnName(i, metaData.getColumnName(i));
+            columns.setColumnLabel(i, metaData.getColumnLabel(i));
+            columns.setColumnType(i, metaData.getColumnType(i));
+            columns.setNullable(i, ResultSetMetaData.columnNullable);
+        }
+        return columns;
+    }
+
+    private static <K> void freeze(Map<K, List<MetadataRow>> index) {
+        index.replaceAll((key, rows) -> Collections.unmodifiableList(rows));
+    }
+
+    private static long key(int functionImplementationId, int memorySize) {
+        return ((long) functionImplementationId << 32) | (memorySize & 0xffffffffL);
+    }
+
+    private static String key(String region, String provider) {
+        return region + '\u0000' + provider;
+    }
+}
@@ -1,39 +1,148 @@
 package at.uibk.dps.databases;
 
 
+import at.uibk.dps.metrics.Metrics;
 import at.uibk.dps.util.Event;
 import at.uibk.dps.util.Type;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.LoggerContext;
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoClientSettings;
 import com.mongodb.MongoCredential;
+import com.mongodb.MongoException;
 import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.*;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.InsertManyOptions;
 import com.mongodb.client.model.Updates;
+import org.bson.BsonDocument;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 import org.slf4j.LoggerFactory;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.mongodb.client.model.Filters.*;
+import static com.mongodb.client.model.Projections.include;
 
 /**
  * Class to handle communication with the mongo database.
  */
 public class MongoDBAccess {
-    private static final long workflowExecutionId = System.currentTimeMillis();
+    /**
+     * The last workflow execution id handed out, the ids are unique within the JVM.
+     */
+    private static final AtomicLong lastWorkflowExecutionId = new AtomicLong();
+    /**
+     * The open workflow contexts, including the default one.
+     */
+    private static final Set<WorkflowContext> workflows = ConcurrentHashMap.newKeySet();
+    /**
+     * The workflow context used by the static methods saving and reading log entries.
+     */
+    private static final WorkflowContext defaultWorkflow = startWorkflow();
     private static final String PATH_TO_PROPERTIES = "mongoDatabase.properties";
     private static MongoClient mongoClient;
     private static MongoDBAccess mongoDBAccess;
-    private static List<Document> entries = Collections.synchronizedList(new ArrayList<>());
-    // used to determine when the end date of a log entry was already used as a new start date if loopCounter > maxConcurrency
-    private static List<Document> usedForMaxConcurrency = Collections.synchronizedList(new ArrayList<>());
+    /**
+     * Encodes the log entries when they are written to the mongo database.
+     */
+    private static final CodecRegistry logCodecRegistry = CodecRegistries.fromRegistries(
+            CodecRegistries.fromCodecs(new LogRecordCodec()), MongoClientSettings.getDefaultCodecRegistry());
+    /**
+     * Whether the log entries are written in the background, the settings of
+     * {@link #enableWriteBehind(int, long, int)} are applied to the contexts started later.
+     */
+    private static boolean writeBehind;
+    private static int writeBehindBatchSize;
+    private static long writeBehindMaxAge;
+    private static int writeBehindMaxPending;
+    /**
+     * Keeps the log entries on disk until they are written to the mongo database, null if they are only kept in
+     * memory.
+     */
+    private static volatile SpillLog spill;
+    /**
+     * Stores the log entries and their 'done' fields, the mongo database unless it is replaced.
+     */
+    private static volatile LogStore store = new LogStore() {
+        @Override
+        public void insert(List<LogRecord> logs) throws IOException {
+            insertIntoCollection(logs);
+        }
+
+        @Override
+        public void setDone(Long value, List<ObjectId> ids) throws IOException {
+            setDoneInCollection(value, ids);
+        }
+    };
     private static String DATABASE;
     private static String COLLECTION;
+    /**
+     * The ids of the processed log entries that have not been marked in the mongo database yet, mapped by the value of
+     * their 'done' field.
+     */
+    private static final Map<Long, List<ObjectId>> pendingDone = new HashMap<>();
+    /**
+     * The amount of ids after which the pending 'done' fields are written to the mongo database.
+     */
+    private static int doneBatchSize = 1000;
+    /**
+     * The amount of documents fetched per round trip while reading the logs to update the metadata DB.
+     */
+    private static int cursorBatchSize = 1000;
+    /**
+     * The amount of threads writing the log entries of {@link #addAllEntriesAsync()}.
+     */
+    private static int insertThreads = 4;
+    /**
+     * The maximum amount of log entries written at once by {@link #addAllEntriesAsync()}.
+     */
+    private static int insertBatchSize = 1000;
+    /**
+     * The maximum amount of batches waiting for a thread, further batches are written by the thread handing them
+     * over, which slows down workflows that finish faster than their log entries are written.
+     */
+    private static int maxQueuedInserts = 16;
+    /**
+     * Writes the batches of {@link #addAllEntriesAsync()}, created on first use.
+     */
+    private static volatile ThreadPoolExecutor insertExecutor;
+    /**
+     * The futures of {@link #addAllEntriesAsync()} that are not completed yet, {@link #close()} waits for them.
+     */
+    private static final Set<CompletableFuture<Void>> pendingInserts = ConcurrentHashMap.newKeySet();
+    /**
+     * The error code of the mongo database if a document with the same id exists already.
+     */
+    private static final int DUPLICATE_KEY = 11000;
+
+    static {
+        Metrics.gauge("mongodb.buffer.depth", MongoDBAccess::getBufferDepth);
+        Metrics.gauge("mongodb.insert.queued", MongoDBAccess::getQueuedInserts);
+        Metrics.gauge("mongodb.done.pending", MongoDBAccess::getPendingDone);
+    }
 
     private MongoDBAccess() throws IOException {
         // disable the logging for mongoDB on stdout
@@ -51,6 +160,12 @@ public class MongoDBAccess {
         final String password = databaseFile.getProperty("password");
         DATABASE = databaseFile.getProperty("database");
         COLLECTION = databaseFile.getProperty("collection");
+        doneBatchSize = checkDoneBatchSize(
+                Integer.parseInt(databaseFile.getProperty("doneBatchSize", String.valueOf(doneBatchSize))));
+        cursorBatchSize = Integer.parseInt(databaseFile.getProperty("cursorBatchSize", String.valueOf(cursorBatchSize)));
+        insertThreads = Integer.parseInt(databaseFile.getProperty("insertThreads", String.valueOf(insertThreads)));
+        insertBatchSize = Integer.parseInt(databaseFile.getProperty("insertBatchSize", String.valueOf(insertBatchSize)));
+        maxQueuedInserts = Integer.parseInt(databaseFile.getProperty("maxQueuedInserts", String.valueOf(maxQueuedInserts)));
 
         MongoCredential sim = MongoCredential.createCredential(username, DATABASE, password.toCharArray());
         mongoClient = MongoClients.create
@@ -68,12 +183,79 @@ public class MongoDBAccess {
         return mongoClient;
     }
 
+    /**
+     * Starts the log of a new workflow execution with its own workflow execution id, buffer and end times. The context
+     * has to be closed when the workflow is finished.
+     *
+     * @return the context to save the log entries of the workflow execution to
+     */
+    public static WorkflowContext startWorkflow() {
+        WorkflowContext workflow = new WorkflowContext(nextWorkflowExecutionId());
+        // the settings are read and the context is registered under the same lock as enableWriteBehind
+        synchronized (MongoDBAccess.class) {
+            workflows.add(workflow);
+            if (writeBehind) {
+                workflow.startWriteBehind(writeBehindBatchSize, writeBehindMaxAge, writeBehindMaxPending);
+            }
+        }
+        return workflow;
+    }
+
+    /**
+     * @return the current time in milliseconds, or the last id + 1 if a workflow was started in the same millisecond
+     */
+    private static long nextWorkflowExecutionId() {
+        long now = System.currentTimeMillis();
+        while (true) {
+            long last = lastWorkflowExecutionId.get();
+            long next = Math.max(now, last + 1);
+            if (lastWorkflowExecutionId.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Removes a closed workflow context.
+     *
+     * @param workflow that was closed
+     */
+    static void closed(WorkflowContext workflow) {
+        workflows.remove(workflow);
+    }
+
+    /**
+     * @return the amount of log entries of all open workflow contexts that were not written to the mongo database yet
+     */
+    private static long getBufferDepth() {
+        long depth = 0;
+        for (WorkflowContext workflow : workflows) {
+            depth += workflow.getBufferDepth();
+        }
+        return depth;
+    }
+
+    /**
+     * Keeps a saved log entry on disk if the spill is enabled.
+     *
+     * @param log that was saved
+     */
+    static void spill(LogRecord log) {
+        SpillLog spillLog = spill;
+        if (spillLog != null) {
+            try {
+                spillLog.append(log);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
     /**
      * Method to save a workflow-start event and its workflow-content and input.
      */
     public static void saveLogWorkflowStart(Type type, String workflowContent, String workflowInput, long start) {
-        saveLog(Event.WORKFLOW_START, null, null, null, null, null, 0L, -1,
-                true, -1, -1, start, type, workflowContent, workflowInput);
+        defaultWorkflow.saveLogWorkflowStart(type, workflowContent, workflowInput, start);
     }
 
     /**
@@ -81,8 +263,8 @@ public class MongoDBAccess {
      */
     public static void saveLog(Event event, String functionId, String deployment, String functionName, String functionType, String output,
                                Long RTT, boolean success, int loopCounter, int maxLoopCounter, long startTime, Type type) {
-        saveLog(event, functionId, deployment, functionName, functionType, output, RTT, -1, success, loopCounter, maxLoopCounter,
-                startTime, type);
+        defaultWorkflow.saveLog(event, functionId, deployment, functionName, functionType, output, RTT, success,
+                loopCounter, maxLoopCounter, startTime, type);
     }
 
     /**
@@ -90,8 +272,8 @@ public class MongoDBAccess {
      */
     public static void saveLog(Event event, String functionId, String deployment, String functionName, String functionType, String output,
                                Long RTT, double cost, boolean success, int loopCounter, int maxLoopCounter, long startTime, Type type) {
-        saveLog(event, functionId, deployment, functionName, functionType, output, RTT, cost, success, loopCounter, maxLoopCounter, startTime, type,
-                null, null);
+        defaultWorkflow.saveLog(event, functionId, deployment, functionName, functionType, output, RTT, cost, success,
+                loopCounter, maxLoopCounter, startTime, type);
     }
 
     /**
@@ -100,31 +282,8 @@ public class MongoDBAccess {
     public static void saveLog(Event event, String functionId, String deployment, String functionName, String functionType, String output,
                                Long RTT, double cost, boolean success, int loopCounter, int maxLoopCounter, long startTime, Type type,
                                String workflowContent, String workflowInput) {
-        Long done = null;
-        if (event.toString().equals("FUNCTION_CANCELED")) {
-            done = 2L;
-        } else if (event.toString().toLowerCase().contains("function")) {
-            done = 0L;
-        }
-        Document log = new Document("workflow_id", workflowExecutionId)
-                .append("workflowContent", workflowContent)
-                .append("workflowInput", workflowInput)
-                .append("function_id", functionId)
-                .append("deployment", deployment)
-                .append("functionName", functionName)
-                .append("functionType", functionType)
-                .append("Event", event.toString())
-                .append("output", output)
-                .append("RTT", RTT)
-                .append("cost", cost)
-                .append("success", success)
-                .append("loopCounter", loopCounter)
-                .append("maxLoopCounter", maxLoopCounter)
-                .append("startTime", new Date(startTime))
-                .append("endTime", new Date(startTime + RTT))
-                .append("type", type.toString())
-                .append("done", done); // flag used to update metadataDB
-        entries.add(log);
+        defaultWorkflow.saveLog(event, functionId, deployment, functionName, functionType, output, RTT, cost, success,
+                loopCounter, maxLoopCounter, startTime, type, workflowContent, workflowInput);
     }
 
     /**
@@ -134,18 +293,7 @@ public class MongoDBAccess {
      * @return the latest end date of the current workflow execution
      */
     public static long getLastEndDateOverall() {
-        if (entries == null || entries.isEmpty()) {
-            return 0;
-        }
-        // create a temporary list to prevent a ConcurrentModificationException
-        ArrayList<Document> tmp = new ArrayList<>(entries);
-        return tmp.stream()
-                .filter(d -> d.getLong("workflow_id") == workflowExecutionId
-                        && d.containsKey("function_id"))
-                .max(Comparator.comparing(d -> d.getDate("endTime")))
-                .get()
-                .getDate("endTime")
-                .getTime();
+        return defaultWorkflow.getLastEndDateOverall();
     }
 
     /**
@@ -155,29 +303,7 @@ public class MongoDBAccess {
      * @return the latest end date of a function outside of a parallelFor of the current workflow execution
      */
     public static long getLastEndDateOutOfLoop() {
-        if (entries == null || entries.isEmpty()) {
-            return 0;
-        }
-        // create a temporary list to prevent a ConcurrentModificationException
-        ArrayList<Document> tmp = new ArrayList<>(entries);
-        return tmp.stream()
-                .filter(d -> d.getLong("workflow_id") == workflowExecutionId
-                        && d.getInteger("loopCounter") == -1
-                        && d.containsKey("function_id"))
-                .max(Comparator.comparing(d -> d.getDate("endTime")))
-                .get()
-                .getDate("endTime")
-                .getTime();
-
-//        long endParallelFor = tmp.stream()
-//                .filter(d -> d.getLong("workflow_id") == workflowExecutionId
-//                        && d.getString("Event").equals("PARALLEL_FOR_END"))
-//                .max(Comparator.comparing(d -> d.getDate("endTime")))
-//                .orElse(new Document("endTime", new Date(0)))
-//                .getDate("endTime")
-//                .getTime();
-//
-//        return Math.max(outOfLoop, endParallelFor);
+        return defaultWorkflow.getLastEndDateOutOfLoop();
     }
 
     /**
@@ -187,61 +313,20 @@ public class MongoDBAccess {
      * @return the latest end date of a function inside of a parallelFor of the current workflow execution
      */
     public static long getLastEndDateInLoop() {
-        if (entries == null || entries.isEmpty()) {
-            return 0;
-        }
-        // create a temporary list to prevent a ConcurrentModificationException
-        ArrayList<Document> tmp = new ArrayList<>(entries);
-        return tmp.stream()
-                .filter(d -> d.getLong("workflow_id") == workflowExecutionId
-                        && d.getInteger("loopCounter") != -1
-                        && d.containsKey("function_id"))
-                .max(Comparator.comparing(d -> d.getDate("endTime")))
-                .get()
-                .getDate("endTime")
-                .getTime();
+        return defaultWorkflow.getLastEndDateInLoop();
     }
 
     /**
-     * Checks in the list of logs for the smallest end time of the current parallelFor construct. Is used to determine
-     * the next starting time for a function within a parallelFor that is over the maximum concurrency limit.
+     * Gets the smallest end time of the current parallelFor construct that has not been used yet. Is used to determine
+     * the next starting time for a function within a parallelFor that is over the maximum concurrency limit. Blocks
+     * until such an end time is logged.
      *
      * @param functionId to check the log entries for
      *
      * @return the earliest finishing time in a parallelFor that has not been used yet for this function
      */
-    public static synchronized long getFirstAvailableStartTime(String functionId) {
-        if (entries == null || entries.isEmpty()) {
-            return 0;
-        }
-        boolean flag = true;
-        // create a temporary list to prevent a ConcurrentModificationException
-        ArrayList<Document> tmp = null;
-        ArrayList<Document> loopLogs = null;
-        Optional<Document> doc = Optional.empty();
-        // check for entry until one is found
-        while (flag) {
-            tmp = new ArrayList<>(entries);
-            loopLogs = new ArrayList<>();
-            Collections.reverse(tmp);
-            /* only get the documents of the current parallelFor
-             * if there was a parallelFor previously, the PARALLEL_FOR_END event signals the end of that parallelFor */
-            for (Document d : tmp) {
-                if (d.getString("Event").equals("PARALLEL_FOR_END")) {
-                    break;
-                }
-                if (d.containsKey("function_id") && functionId.equals(d.getString("function_id")) &&
-                        d.getInteger("loopCounter") != -1 && d.getLong("workflow_id") == workflowExecutionId &&
-                        !usedForMaxConcurrency.contains(d)) {
-                    loopLogs.add(d);
-                }
-            }
-            // get the entry with the smallest end time
-            doc = loopLogs.stream().min(Comparator.comparing(d -> d.getDate("endTime")));
-            flag = !doc.isPresent();
-        }
-        usedForMaxConcurrency.add(doc.get());
-        return doc.get().getDate("endTime").getTime();
+    public static long getFirstAvailableStartTime(String functionId) {
+        return defaultWorkflow.getFirstAvailableStartTime(functionId);
     }
 
     /**
@@ -258,29 +343,417 @@ public class MongoDBAccess {
         }
         MongoDatabase mongoDatabase = mongoClient.getDatabase(DATABASE);
         MongoCollection<Document> dbCollection = mongoDatabase.getCollection(COLLECTION);
-        return dbCollection.find(and(eq("done", 0L), not(eq("function_id", null)),
-                eq("type", "EXEC")));
+        return dbCollection.find(newEntriesFilter());
+    }
+
+    /**
+     * Returns all entries from the logs that were executions, have a function_id field and have not been updated in the
+     * metadata DB already, with the cursor batch size given in the properties.
+     *
+     * @return a MongoIterable containing the fields required to update the metadata DB
+     */
+    public static MongoIterable<UpdateEntry> findNewUpdateEntries() {
+        try {
+            MongoClient client = getConnection();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return findNewUpdateEntries(cursorBatchSize);
+    }
+
+    /**
+     * Returns all entries from the logs that were executions, have a function_id field and have not been updated in the
+     * metadata DB already. Only the fields required to update the metadata DB are transferred and the documents are
+     * decoded lazily.
+     *
+     * @param batchSize the amount of documents fetched per round trip
+     *
+     * @return a MongoIterable containing the fields required to update the metadata DB
+     */
+    public static MongoIterable<UpdateEntry> findNewUpdateEntries(int batchSize) {
+        try {
+            MongoClient client = getConnection();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        MongoDatabase mongoDatabase = mongoClient.getDatabase(DATABASE);
+        MongoCollection<RawBsonDocument> dbCollection = mongoDatabase.getCollection(COLLECTION, RawBsonDocument.class);
+        return dbCollection.find(newEntriesFilter())
+                .projection(include(UpdateEntry.FIELDS))
+                .batchSize(batchSize)
+                .map(MongoDBAccess::readUpdateEntry);
+    }
+
+    /**
+     * Returns the entries with the given ids that were executions, have a function_id field and have not been updated
+     * in the metadata DB already.
+     *
+     * @param ids of the entries
+     *
+     * @return a MongoIterable containing the fields required to update the metadata DB
+     */
+    public static MongoIterable<UpdateEntry> findNewUpdateEntries(Collection<ObjectId> ids) {
+        try {
+            MongoClient client = getConnection();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        MongoDatabase mongoDatabase = mongoClient.getDatabase(DATABASE);
+        MongoCollection<RawBsonDocument> dbCollection = mongoDatabase.getCollection(COLLECTION, RawBsonDocument.class);
+        return dbCollection.find(and(in("_id", ids), newEntriesFilter()))
+                .projection(include(UpdateEntry.FIELDS))
+                .batchSize(cursorBatchSize)
+                .map(MongoDBAccess::readUpdateEntry);
+    }
+
+    /**
+     * Counts the entries from the logs that were executions, have a function_id field and have not been updated in
+     * the metadata DB already.
+     *
+     * @return the amount of entries
+     */
+    public static long countNewEntries() {
+        try {
+            MongoClient client = getConnection();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        MongoDatabase mongoDatabase = mongoClient.getDatabase(DATABASE);
+        MongoCollection<Document> dbCollection = mongoDatabase.getCollection(COLLECTION);
+        long start = System.nanoTime();
+        try {
+            return dbCollection.countDocuments(newEntriesFilter());
+        } finally {
+            Metrics.recordLatency("mongodb.count", start);
+        }
+    }
+
+    /**
+     * Decodes the fields required to update the metadata DB from a read log entry.
+     *
+     * @param document the log entry
+     *
+     * @return the entry
+     */
+    private static UpdateEntry readUpdateEntry(RawBsonDocument document) {
+        Metrics.mark("mongodb.documents.read", 1);
+        return UpdateEntry.fromBson(document);
+    }
+
+    /**
+     * Opens a change stream on the logs which reports the ids of inserted logs that were executions and have a
+     * function_id field. Requires the mongo database to run as replica set.
+     *
+     * @param resumeToken the resume token to continue after, null to start at the current time
+     *
+     * @return a ChangeStreamIterable whose events only contain the document key
+     */
+    public static ChangeStreamIterable<Document> watchNewEntries(BsonDocument resumeToken) {
+        try {
+            MongoClient client = getConnection();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        MongoDatabase mongoDatabase = mongoClient.getDatabase(DATABASE);
+        MongoCollection<Document> dbCollection = mongoDatabase.getCollection(COLLECTION);
+        List<Bson> pipeline = Arrays.asList(
+                Aggregates.match(and(eq("operationType", "insert"), eq("fullDocument.done", 0L),
+                        not(eq("fullDocument.function_id", null)), eq("fullDocument.type", "EXEC"))),
+                Aggregates.project(include("operationType", "documentKey")));
+        ChangeStreamIterable<Document> changeStream = dbCollection.watch(pipeline);
+        if (resumeToken != null) {
+            changeStream = changeStream.resumeAfter(resumeToken);
+        }
+        return changeStream;
+    }
+
+    /**
+     * @return the filter for logs that were executions, have a function_id field and have not been updated in the
+     * metadata DB already
+     */
+    private static Bson newEntriesFilter() {
+        return and(eq("done", 0L), not(eq("function_id", null)), eq("type", "EXEC"));
     }
 
     /**
      * Adds all documents stored in the list of entries to the mongo database.
      */
     public static void addAllEntries() throws IOException {
+        defaultWorkflow.addAllEntries();
+    }
+
+    /**
+     * Adds all documents stored in the list of entries to the mongo database without waiting for them to be written.
+     *
+     * @return a future completing when the documents are written, see {@link WorkflowContext#addAllEntriesAsync()}
+     */
+    public static CompletableFuture<Void> addAllEntriesAsync() {
+        return defaultWorkflow.addAllEntriesAsync();
+    }
+
+    /**
+     * Adds the given log entries to the mongo database.
+     *
+     * @param logs to add
+     */
+    static void insertEntries(List<LogRecord> logs) throws IOException {
+        if (!logs.isEmpty()) {
+            long start = System.nanoTime();
+            try {
+                store.insert(logs);
+            } catch (IOException | RuntimeException e) {
+                Metrics.error("mongodb.insert", e);
+                throw e;
+            } finally {
+                Metrics.recordLatency("mongodb.insert", start);
+            }
+            Metrics.recordValue("mongodb.insert.batch", logs.size());
+            Metrics.mark("mongodb.documents.inserted", logs.size());
+        }
+        SpillLog spillLog = spill;
+        if (spillLog != null) {
+            spillLog.written(logs);
+        }
+    }
+
+    /**
+     * Adds the given log entries to the mongo database in batches of {@code insertBatchSize} entries. The batches are
+     * distributed over {@code insertThreads} lanes, the lanes are written at the same time and the batches of a lane
+     * one after the other, so the calling thread returns right away. If a batch cannot be written, the following
+     * batches of its lane are skipped.
+     *
+     * @param logs to add
+     *
+     * @return a future completing when all batches are written, exceptionally if a batch cannot be written or the
+     * connection was closed in the meantime
+     */
+    @SuppressWarnings("unchecked")
+    static CompletableFuture<Void> insertEntriesAsync(List<LogRecord> logs) {
+        if (logs.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        int batches = (logs.size() + insertBatchSize - 1) / insertBatchSize;
+        CompletableFuture<Void>[] lanes = new CompletableFuture[Math.min(insertThreads, batches)];
+        for (int i = 0; i < batches; i++) {
+            List<LogRecord> batch = logs.subList(i * insertBatchSize, Math.min(logs.size(), (i + 1) * insertBatchSize));
+            Runnable write = () -> {
+                try {
+                    insertEntries(batch);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            };
+            int lane = i % lanes.length;
+            lanes[lane] = lanes[lane] == null ? submitInsert(write)
+                    : lanes[lane].thenCompose(written -> submitInsert(write));
+        }
+        return track(CompletableFuture.allOf(lanes));
+    }
+
+    /**
+     * Runs the given task on the threads writing the log entries.
+     *
+     * @param task to run
+     *
+     * @return a future completing when the task is done
+     */
+    static CompletableFuture<Void> runAsync(Runnable task) {
+        return track(submitInsert(task));
+    }
+
+    /**
+     * Hands the given task to the threads writing the log entries.
+     *
+     * @param task to run
+     *
+     * @return a future completing when the task is done, exceptionally if it fails or is rejected
+     */
+    private static CompletableFuture<Void> submitInsert(Runnable task) {
+        InsertTask insert = new InsertTask(task);
+        getInsertExecutor().execute(insert);
+        return insert.future;
+    }
+
+    /**
+     * Remembers the given future until it is completed, so {@link #close()} can wait for it.
+     *
+     * @param future of {@link #addAllEntriesAsync()}
+     *
+     * @return the future
+     */
+    private static CompletableFuture<Void> track(CompletableFuture<Void> future) {
+        pendingInserts.add(future);
+        future.whenComplete((result, exception) -> pendingInserts.remove(future));
+        return future;
+    }
+
+    /**
+     * @return the executor writing the log entries, created on first use
+     */
+    private static synchronized ThreadPoolExecutor getInsertExecutor() {
+        if (insertExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(insertThreads, insertThreads, 60,
+                    TimeUnit.SECONDS, new ArrayBlockingQueue<>(maxQueuedInserts), runnable -> {
+                Thread thread = new Thread(runnable, "log-writer");
+                thread.setDaemon(true);
+                return thread;
+            }, MongoDBAccess::rejectInsert);
+            executor.allowCoreThreadTimeOut(true);
+            insertExecutor = executor;
+        }
+        return insertExecutor;
+    }
+
+    /**
+     * Handles a task that the executor writing the log entries does not accept. If all threads are busy and the queue
+     * is full, the task runs on the thread handing it over. If the executor is shut down, its future completes
+     * exceptionally, so nobody waits for it forever.
+     *
+     * @param task     the rejected {@link InsertTask}
+     * @param executor that rejected the task
+     */
+    private static void rejectInsert(Runnable task, ThreadPoolExecutor executor) {
+        if (!executor.isShutdown()) {
+            task.run();
+        } else if (task instanceof InsertTask) {
+            ((InsertTask) task).future.completeExceptionally(
+                    new RejectedExecutionException("The log entries cannot be written after close()."));
+        }
+    }
+
+    /**
+     * @return the amount of batches waiting for a thread to write them
+     */
+    private static long getQueuedInserts() {
+        ThreadPoolExecutor executor = insertExecutor;
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    /**
+     * Inserts the given log entries into the collection of the mongo database.
+     *
+     * @param logs to insert
+     */
+    private static void insertIntoCollection(List<LogRecord> logs) throws IOException {
         MongoClient client = getConnection();
         MongoDatabase mongoDatabase = mongoClient.getDatabase(DATABASE);
-        MongoCollection<Document> dbCollection = mongoDatabase.getCollection(COLLECTION);
-        if (!entries.isEmpty()) {
-            dbCollection.insertMany(entries);
+        MongoCollection<LogRecord> dbCollection = mongoDatabase.getCollection(COLLECTION, LogRecord.class)
+                .withCodecRegistry(logCodecRegistry);
+        insertUnordered(dbCollection, logs);
+    }
+
+    /**
+     * Inserts the given documents unordered, so the server does not stop at the first failed document and may write
+     * them in any order. Documents that exist already are skipped, so writing documents again after a failure is
+     * safe.
+     *
+     * @param dbCollection to insert into
+     * @param documents    to insert
+     */
+    private static <T> void insertUnordered(MongoCollection<T> dbCollection, List<? extends T> documents) {
+        try {
+            dbCollection.insertMany(documents, new InsertManyOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            for (BulkWriteError error : e.getWriteErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the store of the log entries, e.g. with an in-memory stand-in.
+     *
+     * @param logStore the new store
+     */
+    static void setStore(LogStore logStore) {
+        store = logStore;
+    }
+
+    /**
+     * Writes the log entries to the mongo database in batches from a background thread instead of all at once in
+     * {@link #addAllEntries()}, which then only waits for the remaining entries. Written log entries are removed from
+     * memory. Applies to the default and all open workflow contexts as well as the ones started later, each one is
+     * written by its own thread. The pending entries are written when the JVM shuts down.
+     *
+     * @param batchSize  the maximum amount of entries written at once
+     * @param maxAge     the maximum time in milliseconds an entry waits for its batch to be full
+     * @param maxPending the maximum amount of pending entries before saving further entries blocks
+     */
+    public static synchronized void enableWriteBehind(int batchSize, long maxAge, int maxPending) {
+        if (writeBehind) {
+            return;
+        }
+        writeBehind = true;
+        writeBehindBatchSize = batchSize;
+        writeBehindMaxAge = maxAge;
+        writeBehindMaxPending = maxPending;
+        for (WorkflowContext workflow : workflows) {
+            workflow.startWriteBehind(batchSize, maxAge, maxPending);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (WorkflowContext workflow : workflows) {
+                workflow.stopWriteBehind();
+            }
+        }));
+    }
+
+    /**
+     * Keeps the saved log entries in memory-mapped segment files in the given directory until they are written to the
+     * mongo database, so they survive a crash of the JVM. Segments left over from a previous run are written to the
+     * mongo database first, segments that cannot be written are kept for the next run. Each running instance needs its
+     * own directory.
+     *
+     * @param directory   to keep the segments in
+     * @param segmentSize the size of a segment in bytes
+     */
+    public static synchronized void enableSpill(String directory, int segmentSize) {
+        if (spill != null) {
+            return;
+        }
+        Path path = Paths.get(directory);
+        try {
+            for (Path segment : SpillLog.findSegments(path)) {
+                try {
+                    replaySegment(segment);
+                } catch (IOException | MongoException e) {
+                    Metrics.error("mongodb.replay", e);
+                    e.printStackTrace();
+                }
+            }
+            spill = new SpillLog(path, segmentSize);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the log entries of a segment left over from a previous run to the mongo database and deletes the
+     * segment. Log entries that were already written before the previous run stopped are skipped.
+     *
+     * @param segment to replay
+     */
+    private static void replaySegment(Path segment) throws IOException {
+        List<RawBsonDocument> documents = SpillLog.readSegment(segment);
+        if (!documents.isEmpty()) {
+            MongoClient client = getConnection();
+            MongoCollection<RawBsonDocument> dbCollection = client.getDatabase(DATABASE)
+                    .getCollection(COLLECTION, RawBsonDocument.class);
+            insertUnordered(dbCollection, documents);
         }
+        Files.delete(segment);
     }
 
     /**
-     * Get the list of all log entries.
+     * Get the list of all log entries. The log entries are converted to documents on every call, changes to the list
+     * are not reflected in the log entries. If the log entries are written in the background, only the log entries
+     * that were not written yet are returned.
      *
      * @return a list of documents containing all logs.
      */
     public static List<Document> getAllEntries() {
-        return entries;
+        return defaultWorkflow.getAllEntries();
     }
 
     /**
@@ -290,6 +763,16 @@ public class MongoDBAccess {
      * @param value    the value to set the field to, 1 means "done", 2 means "ignored"
      */
     public static void setAsDone(Document document, Long value) {
+        setAsDone((ObjectId) document.get("_id"), value);
+    }
+
+    /**
+     * Sets the 'done' field in the mongoDB document with the given id to the given value.
+     *
+     * @param id    of the document to set the field
+     * @param value the value to set the field to, 1 means "done", 2 means "ignored"
+     */
+    public static void setAsDone(ObjectId id, Long value) {
         try {
             MongoClient client = getConnection();
         } catch (IOException e) {
@@ -297,16 +780,180 @@ public class MongoDBAccess {
         }
         MongoDatabase mongoDatabase = mongoClient.getDatabase(DATABASE);
         MongoCollection<Document> dbCollection = mongoDatabase.getCollection(COLLECTION);
-        ObjectId id = (ObjectId) document.get("_id");
         dbCollection.updateOne(eq("_id", id), Updates.set("done", value));
     }
 
+    /**
+     * Marks the document with the given id with the given value. The 'done' fields are written to the mongo database
+     * in batches, {@link #flushDone()} has to be called after the last document was marked.
+     *
+     * @param id    of the document to set the field
+     * @param value the value to set the field to, 1 means "done", 2 means "ignored"
+     */
+    public static synchronized void markAsDone(ObjectId id, Long value) {
+        List<ObjectId> ids = pendingDone.computeIfAbsent(value, k -> new ArrayList<>());
+        ids.add(id);
+        // after a failed write, the ids are kept and written again once another batch is full
+        if (ids.size() % doneBatchSize == 0) {
+            flushDone(value, ids);
+        }
+    }
+
+    /**
+     * Writes the 'done' fields of all marked documents to the mongo database. The 'done' fields that cannot be written
+     * are kept and written again by the next call.
+     *
+     * @return true if all 'done' fields were written, false if the marked documents would be updated again by the next
+     * update run
+     */
+    public static synchronized boolean flushDone() {
+        boolean written = true;
+        for (Map.Entry<Long, List<ObjectId>> ids : pendingDone.entrySet()) {
+            written &= flushDone(ids.getKey(), ids.getValue());
+        }
+        return written;
+    }
+
+    /**
+     * Sets the 'done' field of all documents with the given ids with a single update and clears the given list if it
+     * was written.
+     *
+     * @param value the value to set the field to
+     * @param ids   of the documents to set the field
+     *
+     * @return true if the 'done' fields were written
+     */
+    private static boolean flushDone(Long value, List<ObjectId> ids) {
+        if (ids.isEmpty()) {
+            return true;
+        }
+        long start = System.nanoTime();
+        try {
+            store.setDone(value, ids);
+            Metrics.recordValue("mongodb.done.batch", ids.size());
+            Metrics.mark("mongodb.documents.done", ids.size());
+        } catch (IOException e) {
+            Metrics.error("mongodb.done", e);
+            e.printStackTrace();
+            return false;
+        } catch (RuntimeException e) {
+            Metrics.error("mongodb.done", e);
+            throw e;
+        } finally {
+            Metrics.recordLatency("mongodb.done", start);
+        }
+        ids.clear();
+        return true;
+    }
 
     /**
-     * Closes the mongoDB connection.
+     * Sets the 'done' field of all documents with the given ids in the collection of the mongo database.
+     *
+     * @param value the value to set the field to
+     * @param ids   of the documents to set the field
      */
+    private static void setDoneInCollection(Long value, List<ObjectId> ids) throws IOException {
+        MongoClient client = getConnection();
+        MongoDatabase mongoDatabase = mongoClient.getDatabase(DATABASE);
+        MongoCollection<Document> dbCollection = mongoDatabase.getCollection(COLLECTION);
+        dbCollection.updateMany(in("_id", ids), Updates.set("done", value));
+    }
+
+    /**
+     * @return the amount of marked documents whose 'done' fields are not written to the mongo database yet
+     */
+    private static synchronized long getPendingDone() {
+        long pending = 0;
+        for (List<ObjectId> ids : pendingDone.values()) {
+            pending += ids.size();
+        }
+        return pending;
+    }
+
+    /**
+     * Sets the amount of marked documents after which their 'done' fields are written to the mongo database.
+     *
+     * @param batchSize the amount of documents
+     *
+     * @throws IllegalArgumentException if the amount is not positive
+     */
+    public static synchronized void setDoneBatchSize(int batchSize) {
+        doneBatchSize = checkDoneBatchSize(batchSize);
+    }
+
+    /**
+     * @param batchSize the amount of documents after which their 'done' fields are written
+     *
+     * @return the given amount
+     *
+     * @throws IllegalArgumentException if the amount is not positive
+     */
+    private static int checkDoneBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("The doneBatchSize has to be positive, was " + batchSize + ".");
+        }
+        return batchSize;
+    }
+
+    /**
+     * Closes the mongoDB connection after the batches of {@link #addAllEntriesAsync()} are written, waits at most one
+     * minute for them. Batches handed over after the threads were stopped are not written, their futures complete
+     * exceptionally.
+     */
+    @SuppressWarnings("unchecked")
     public static void close() {
+        // the following batches of a lane are only handed over when the previous one is written, so wait for the
+        // futures instead of the executor
+        CompletableFuture<Void> pending = CompletableFuture.allOf(pendingInserts.toArray(new CompletableFuture[0]));
+        try {
+            pending.get(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // already reported by the failed future
+        } catch (TimeoutException e) {
+            e.printStackTrace();
+        }
+        ThreadPoolExecutor executor = insertExecutor;
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (MongoDBAccess.class) {
+                // a later addAllEntriesAsync starts new threads
+                if (insertExecutor == executor) {
+                    insertExecutor = null;
+                }
+            }
+        }
         mongoClient.close();
     }
 
+    /**
+     * A batch of {@link #addAllEntriesAsync()} with the future completed when it is written.
+     */
+    private static class InsertTask implements Runnable {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        private final Runnable write;
+
+        InsertTask(Runnable write) {
+            this.write = write;
+        }
+
+        @Override
+        public void run() {
+            try {
+                write.run();
+                future.complete(null);
+            } catch (CompletionException e) {
+                future.completeExceptionally(e.getCause());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,111 @@
+package at.uibk.dps.databases;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+
+/**
+ * The fields of the output of a function that are required to update the metadata DB. The output is read in a single
+ * pass that stops as soon as all fields are found, so large outputs are neither parsed entirely nor kept as a tree.
+ */
+class OutputFields {
+    /**
+     * The fields of an entry without output.
+     */
+    static final OutputFields NONE = new OutputFields(-1, -1);
+
+    private final int runtime;
+    private final int functionMemory;
+
+    private OutputFields(int runtime, int functionMemory) {
+        this.runtime = runtime;
+        this.functionMemory = functionMemory;
+    }
+
+    /**
+     * Reads the fields from the given output.
+     *
+     * @param output the JSON object returned by the function
+     *
+     * @return the fields, -1 for each field that does not exist or is not a number
+     */
+    static OutputFields read(String output) {
+        if (output == null) {
+            return NONE;
+        }
+        int runtime = -1;
+        int functionMemory = -1;
+        boolean runtimeFound = false;
+        boolean functionMemoryFound = false;
+        try (JsonReader reader = new JsonReader(new StringReader(output))) {
+            reader.setLenient(true);
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return NONE;
+            }
+            reader.beginObject();
+            while ((!runtimeFound || !functionMemoryFound) && reader.hasNext()) {
+                String name = reader.nextName();
+                if (!runtimeFound && name.equals("runtime")) {
+                    runtime = readInt(reader);
+                    runtimeFound = true;
+                } else if (!functionMemoryFound && name.equals("functionMemory")) {
+                    functionMemory = readInt(reader);
+                    functionMemoryFound = true;
+                } else {
+                    reader.skipValue();
+                }
+            }
+        } catch (IOException | JsonParseException | IllegalStateException | NumberFormatException e) {
+            e.printStackTrace();
+        }
+        return new OutputFields(runtime, functionMemory);
+    }
+
+    /**
+     * Reads the next value as int, in the same way as {@link com.google.gson.JsonElement#getAsInt()}.
+     *
+     * @param reader positioned at the value
+     *
+     * @return the value, -1 if it is not a number or a string
+     *
+     * @throws IOException if the value cannot be read
+     */
+    private static int readInt(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING) {
+            return Integer.parseInt(reader.nextString());
+        }
+        if (token != JsonToken.NUMBER) {
+            reader.skipValue();
+            return -1;
+        }
+        String number = reader.nextString();
+        try {
+            return Integer.parseInt(number);
+        } catch (NumberFormatException e) {
+            try {
+                return (int) Long.parseLong(number);
+            } catch (NumberFormatException e2) {
+                return new BigDecimal(number).intValue();
+            }
+        }
+    }
+
+    /**
+     * @return the runtime measured by the function in milliseconds, -1 if it is unknown
+     */
+    int getRuntime() {
+        return runtime;
+    }
+
+    /**
+     * @return the memory of the function in MB, -1 if it is unknown
+     */
+    int getFunctionMemory() {
+        return functionMemory;
+    }
+}
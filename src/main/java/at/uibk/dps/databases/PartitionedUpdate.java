@@ -0,0 +1,109 @@
+package at.uibk.dps.databases;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Hands log entries to a fixed amount of worker threads, partitioned by their function id. Log entries with the same
+ * function id are always processed by the same worker in the order they were read.
+ */
+class PartitionedUpdate {
+    /**
+     * Signals a worker that there are no more log entries.
+     */
+    private static final UpdateEntry END = new UpdateEntry(null, null, 0, -1, false, -1, null);
+    /**
+     * The maximum amount of log entries waiting per worker before reading further log entries blocks.
+     */
+    private static final int QUEUE_CAPACITY = 1000;
+
+    private final List<BlockingQueue<UpdateEntry>> queues = new ArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final Consumer<UpdateEntry> update;
+
+    /**
+     * Creates the given amount of workers which apply the given update to each log entry.
+     *
+     * @param threads the amount of workers
+     * @param update  to apply to each log entry
+     *
+     * @throws IllegalArgumentException if the amount of workers is not positive
+     */
+    PartitionedUpdate(int threads, Consumer<UpdateEntry> update) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The amount of threads has to be positive, was " + threads + ".");
+        }
+        this.update = update;
+        for (int i = 0; i < threads; i++) {
+            BlockingQueue<UpdateEntry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            queues.add(queue);
+            Thread worker = new Thread(() -> work(queue), "metadata-update-" + i);
+            // never keep the JVM alive, even if a worker is not signaled
+            worker.setDaemon(true);
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Distributes the given log entries to the workers and waits until all of them are processed. If reading the log
+     * entries fails, waits until the log entries distributed so far are processed before the exception is thrown.
+     *
+     * @param logs the log entries to process
+     */
+    void run(Iterable<UpdateEntry> logs) {
+        workers.forEach(Thread::start);
+        try {
+            for (UpdateEntry log : logs) {
+                String functionId = log.getFunctionId();
+                if (functionId != null) {
+                    queues.get(Math.floorMod(functionId.hashCode(), queues.size())).put(log);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            finish();
+        }
+    }
+
+    /**
+     * Signals the end to all workers and waits until they are done. Interrupts the workers instead if the current
+     * thread is interrupted.
+     */
+    private void finish() {
+        try {
+            for (BlockingQueue<UpdateEntry> queue : queues) {
+                queue.put(END);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            workers.forEach(Thread::interrupt);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Processes the log entries of the given queue until the end is signaled.
+     *
+     * @param queue to take the log entries from
+     */
+    private void work(BlockingQueue<UpdateEntry> queue) {
+        try {
+            UpdateEntry log;
+            while ((log = queue.take()) != END) {
+                try {
+                    update.accept(log);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package at.uibk.dps.databases;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * The prices of an entry in the provider table of the metadata DB.
+ */
+class ProviderPrice {
+    private final double invocationCost;
+    private final double durationGBpsCost;
+    private final double durationGHzpsCost;
+    private final int unitTimems;
+
+    ProviderPrice(double invocationCost, double durationGBpsCost, double durationGHzpsCost, int unitTimems) {
+        this.invocationCost = invocationCost;
+        this.durationGBpsCost = durationGBpsCost;
+        this.durationGHzpsCost = durationGHzpsCost;
+        this.unitTimems = unitTimems;
+    }
+
+    /**
+     * Reads the prices from the current row of the given ResultSet.
+     *
+     * @param resultSet positioned on the row to read
+     *
+     * @return the prices of the row
+     *
+     * @throws SQLException if a column cannot be read
+     */
+    static ProviderPrice fromResultSet(ResultSet resultSet) throws SQLException {
+        return new ProviderPrice(resultSet.getDouble("invocationCost"), resultSet.getDouble("durationGBpsCost"),
+                resultSet.getDouble("durationGHzpsCost"), resultSet.getInt("unitTimems"));
+    }
+
+    double getInvocationCost() {
+        return invocationCost;
+    }
+
+    double getDurationGBpsCost() {
+        return durationGBpsCost;
+    }
+
+    double getDurationGHzpsCost() {
+        return durationGHzpsCost;
+    }
+
+    int getUnitTimems() {
+        return unitTimems;
+    }
+}
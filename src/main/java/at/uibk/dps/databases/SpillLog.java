@@ -0,0 +1,267 @@
+package at.uibk.dps.databases;
+
+import org.bson.BsonBinaryWriter;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the saved log entries in memory-mapped segment files, so that the log entries of a workflow
+ * execution are not lost if the JVM dies before they are written to the mongo database.
+ * <p>
+ * Each record consists of the length of the encoded log entry, its CRC32 and the BSON document. The length is written
+ * last, a record with length 0 marks the end of a segment. Segments are deleted as soon as all of their log entries
+ * were written to the mongo database, the active segment is truncated instead. Segments that are left over from a
+ * previous run are replayed with {@link #readSegment(Path)}.
+ */
+class SpillLog {
+    /**
+     * The file extension of the segments.
+     */
+    static final String EXTENSION = ".spill";
+    /**
+     * The length of the header of a record, its length and its CRC32.
+     */
+    private static final int HEADER = 8;
+    private static final byte[] ZEROS = new byte[64 * 1024];
+    private static final LogRecordCodec codec = new LogRecordCodec();
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Map<Integer, Segment> segments = new HashMap<>();
+    private Segment active;
+    private int nextSegment;
+
+    /**
+     * Creates a spill log writing new segments to the given directory.
+     *
+     * @param directory   to write the segments to
+     * @param segmentSize the size of a segment in bytes
+     *
+     * @throws IOException if the directory cannot be created
+     */
+    SpillLog(Path directory, int segmentSize) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Appends the given log entry to the active segment and remembers the segment in the log entry.
+     *
+     * @param log to append
+     *
+     * @throws IOException if a new segment cannot be created
+     */
+    void append(LogRecord log) throws IOException {
+        // encode outside of the lock, only the copy into the segment is serialized
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        codec.encode(new BsonBinaryWriter(buffer), log, EncoderContext.builder().build());
+        byte[] bytes = buffer.getInternalBuffer();
+        int length = buffer.getSize();
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+
+        synchronized (this) {
+            if (active == null || active.position + HEADER + length > active.buffer.capacity()) {
+                roll(HEADER + length);
+            }
+            MappedByteBuffer mapped = active.buffer;
+            int position = active.position;
+            mapped.putInt(position + 4, (int) crc.getValue());
+            ByteBuffer target = mapped.duplicate();
+            target.position(position + HEADER);
+            target.put(bytes, 0, length);
+            mapped.putInt(position, length);
+            active.position = position + HEADER + length;
+            active.pending++;
+            log.segment = active.index;
+        }
+    }
+
+    /**
+     * Has to be called after the given log entries were written to the mongo database. Deletes the segments that only
+     * hold written log entries and truncates the active segment if all of its log entries were written. Log entries
+     * that were reported as written before are ignored, so writing log entries again does not affect other ones.
+     *
+     * @param logs that were written
+     */
+    synchronized void written(List<LogRecord> logs) {
+        for (LogRecord log : logs) {
+            if (log.segment < 0) {
+                continue;
+            }
+            Segment segment = segments.get(log.segment);
+            if (segment != null && segment.pending > 0) {
+                segment.pending--;
+            }
+            log.segment = -1;
+        }
+        List<Segment> done = new ArrayList<>();
+        for (Segment segment : segments.values()) {
+            if (segment.pending == 0) {
+                done.add(segment);
+            }
+        }
+        for (Segment segment : done) {
+            if (segment == active) {
+                truncate(segment);
+            } else {
+                delete(segment);
+            }
+        }
+    }
+
+    /**
+     * Replaces the active segment with a new one that can hold at least the given amount of bytes.
+     *
+     * @param minSize the size of the record to append
+     *
+     * @throws IOException if the segment cannot be created
+     */
+    private void roll(int minSize) throws IOException {
+        if (active != null && active.pending == 0) {
+            delete(active);
+        }
+        int index = nextSegment++;
+        Path path = directory.resolve(String.format("%013d-%06d%s", System.currentTimeMillis(), index, EXTENSION));
+        // the file is zero filled, so the end of the segment is marked
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            active = new Segment(index, path,
+                    channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, minSize)));
+        }
+        segments.put(index, active);
+    }
+
+    /**
+     * Resets the given segment so that it is reused from the start.
+     *
+     * @param segment to truncate
+     */
+    private void truncate(Segment segment) {
+        if (segment.position == 0) {
+            return;
+        }
+        // mark the end first, so the old records are never replayed
+        segment.buffer.putInt(0, 0);
+        ByteBuffer target = segment.buffer.duplicate();
+        target.position(0);
+        while (target.position() < segment.position) {
+            target.put(ZEROS, 0, Math.min(ZEROS.length, segment.position - target.position()));
+        }
+        segment.position = 0;
+    }
+
+    /**
+     * Deletes the file of the given segment.
+     *
+     * @param segment to delete
+     */
+    private void delete(Segment segment) {
+        segments.remove(segment.index);
+        if (segment == active) {
+            active = null;
+        }
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Lists the segments in the given directory.
+     *
+     * @param directory to search
+     *
+     * @return the paths of the segments, oldest first
+     *
+     * @throws IOException if the directory cannot be read
+     */
+    static List<Path> findSegments(Path directory) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return paths;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path path : stream) {
+                paths.add(path);
+            }
+        }
+        paths.sort(null);
+        return paths;
+    }
+
+    /**
+     * Reads the complete records of the given segment. Reading stops at the end mark or at a record that was not
+     * written completely.
+     *
+     * @param path of the segment
+     *
+     * @return the log entries of the segment
+     *
+     * @throws IOException if the segment cannot be read
+     */
+    static List<RawBsonDocument> readSegment(Path path) throws IOException {
+        List<RawBsonDocument> documents = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int position = 0;
+            while (position + HEADER <= buffer.capacity()) {
+                int length = buffer.getInt(position);
+                if (length <= 0 || position + HEADER + length > buffer.capacity()) {
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                ByteBuffer source = buffer.duplicate();
+                source.position(position + HEADER);
+                source.get(bytes);
+                CRC32 crc = new CRC32();
+                crc.update(bytes, 0, length);
+                if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                    break;
+                }
+                documents.add(new RawBsonDocument(bytes));
+                position += HEADER + length;
+            }
+        }
+        return documents;
+    }
+
+    /**
+     * A segment file mapped into memory.
+     */
+    private static class Segment {
+        final int index;
+        final Path path;
+        final MappedByteBuffer buffer;
+        /**
+         * The position of the next record.
+         */
+        int position;
+        /**
+         * The amount of log entries in the segment that were not written to the mongo database yet.
+         */
+        int pending;
+
+        Segment(int index, Path path, MappedByteBuffer buffer) {
+            this.index = index;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package at.uibk.dps.databases;
+
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+/**
+ * The fields of a log entry that are required to update the metadata DB.
+ */
+public class UpdateEntry {
+    /**
+     * The fields of a log entry that are read to update the metadata DB.
+     */
+    static final String[] FIELDS = {"_id", "function_id", "RTT", "cost", "success", "maxLoopCounter", "output"};
+
+    private final ObjectId id;
+    private final String functionId;
+    private final long RTT;
+    private final double cost;
+    private final boolean success;
+    private final int maxLoopCounter;
+    private final String output;
+    /**
+     * The fields read from the output, null until they are required.
+     */
+    private OutputFields outputFields;
+
+    UpdateEntry(ObjectId id, String functionId, long RTT, double cost, boolean success, int maxLoopCounter,
+                String output) {
+        this.id = id;
+        this.functionId = functionId;
+        this.RTT = RTT;
+        this.cost = cost;
+        this.success = success;
+        this.maxLoopCounter = maxLoopCounter;
+        this.output = output;
+    }
+
+    /**
+     * Creates an entry from the given log document.
+     *
+     * @param document the log
+     *
+     * @return the entry
+     */
+    public static UpdateEntry fromDocument(Document document) {
+        Integer maxLoopCounter = document.getInteger("maxLoopCounter");
+        return new UpdateEntry(document.getObjectId("_id"), document.getString("function_id"),
+                document.getLong("RTT"), document.getDouble("cost"), document.getBoolean("success"),
+                maxLoopCounter == null ? -1 : maxLoopCounter, document.getString("output"));
+    }
+
+    /**
+     * Creates an entry from the given log document. Only the required fields are decoded, so a
+     * {@link org.bson.RawBsonDocument} is never decoded entirely.
+     *
+     * @param document the log
+     *
+     * @return the entry
+     */
+    public static UpdateEntry fromBson(BsonDocument document) {
+        BsonValue functionId = document.get("function_id");
+        BsonValue maxLoopCounter = document.get("maxLoopCounter");
+        BsonValue output = document.get("output");
+        return new UpdateEntry(document.getObjectId("_id").getValue(),
+                functionId != null && functionId.isString() ? functionId.asString().getValue() : null,
+                document.getNumber("RTT").longValue(), document.getNumber("cost").doubleValue(),
+                document.getBoolean("success").getValue(),
+                maxLoopCounter != null && maxLoopCounter.isNumber() ? maxLoopCounter.asNumber().intValue() : -1,
+                output != null && output.isString() ? output.asString().getValue() : null);
+    }
+
+    public ObjectId getId() {
+        return id;
+    }
+
+    public String getFunctionId() {
+        return functionId;
+    }
+
+    public long getRTT() {
+        return RTT;
+    }
+
+    public double getCost() {
+        return cost;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * @return the maximum loop counter, -1 if the function was not executed in a loop
+     */
+    public int getMaxLoopCounter() {
+        return maxLoopCounter;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    /**
+     * @return the runtime measured by the function in milliseconds, -1 if it is not part of the output
+     */
+    public int getRuntime() {
+        return getOutputFields().getRuntime();
+    }
+
+    /**
+     * @return the memory of the function in MB, -1 if it is not part of the output
+     */
+    public int getFunctionMemory() {
+        return getOutputFields().getFunctionMemory();
+    }
+
+    /**
+     * Reads the output once, all fields are read in the same pass.
+     *
+     * @return the fields of the output
+     */
+    private OutputFields getOutputFields() {
+        if (outputFields == null) {
+            outputFields = OutputFields.read(output);
+        }
+        return outputFields;
+    }
+}
@@ -0,0 +1,277 @@
+package at.uibk.dps.databases;
+
+import at.uibk.dps.metrics.Metrics;
+import at.uibk.dps.util.Event;
+import at.uibk.dps.util.Type;
+import org.bson.Document;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The log entries of a single workflow execution. Every context has its own workflow execution id, buffer, end time
+ * index and concurrency slots, so the workflows of one engine process do not see each other's log entries. A context
+ * is created with {@link MongoDBAccess#startWorkflow()} and has to be closed when the workflow is finished, which
+ * writes its remaining log entries to the mongo database.
+ * <p>
+ * The static methods of {@link MongoDBAccess} use a default context, so engines running a single workflow per process
+ * do not need to create one.
+ */
+public class WorkflowContext implements AutoCloseable {
+    private final long workflowExecutionId;
+    private final LogBuffer entries = new LogBuffer();
+    /**
+     * The latest end times of the log entries of the workflow execution.
+     */
+    private final EndTimeIndex endTimes = new EndTimeIndex();
+    /**
+     * The end times of the current parallelFor that were not used as start time yet, used if loopCounter >
+     * maxConcurrency.
+     */
+    private final ConcurrencySlots concurrencySlots = new ConcurrencySlots();
+    /**
+     * Writes the log entries to the mongo database in the background, null if they are only written by
+     * {@link #addAllEntries()}.
+     */
+    private volatile LogFlusher flusher;
+    private volatile boolean closed;
+
+    WorkflowContext(long workflowExecutionId) {
+        this.workflowExecutionId = workflowExecutionId;
+    }
+
+    /**
+     * @return the id written to the 'workflow_id' field of the log entries of this workflow execution
+     */
+    public long getWorkflowExecutionId() {
+        return workflowExecutionId;
+    }
+
+    /**
+     * Method to save a workflow-start event and its workflow-content and input.
+     */
+    public void saveLogWorkflowStart(Type type, String workflowContent, String workflowInput, long start) {
+        saveLog(Event.WORKFLOW_START, null, null, null, null, null, 0L, -1,
+                true, -1, -1, start, type, workflowContent, workflowInput);
+    }
+
+    /**
+     * Method to save a log entry to a list of entries, sets the 'cost' field to -1.
+     */
+    public void saveLog(Event event, String functionId, String deployment, String functionName, String functionType,
+                        String output, Long RTT, boolean success, int loopCounter, int maxLoopCounter, long startTime,
+                        Type type) {
+        saveLog(event, functionId, deployment, functionName, functionType, output, RTT, -1, success, loopCounter,
+                maxLoopCounter, startTime, type);
+    }
+
+    /**
+     * Method to save a log entry to a list of entries, sets the workflowContent and workflowInput to null.
+     */
+    public void saveLog(Event event, String functionId, String deployment, String functionName, String functionType,
+                        String output, Long RTT, double cost, boolean success, int loopCounter, int maxLoopCounter,
+                        long startTime, Type type) {
+        saveLog(event, functionId, deployment, functionName, functionType, output, RTT, cost, success, loopCounter,
+                maxLoopCounter, startTime, type, null, null);
+    }
+
+    /**
+     * Method to save a log entry to a list of entries.
+     *
+     * @throws IllegalStateException if the context is closed
+     */
+    public void saveLog(Event event, String functionId, String deployment, String functionName, String functionType,
+                        String output, Long RTT, double cost, boolean success, int loopCounter, int maxLoopCounter,
+                        long startTime, Type type, String workflowContent, String workflowInput) {
+        if (closed) {
+            throw new IllegalStateException("The workflow execution " + workflowExecutionId + " is closed.");
+        }
+        LogRecord log = new LogRecord(workflowExecutionId, workflowContent, workflowInput, functionId, deployment,
+                functionName, functionType, event, output, RTT, cost, success, loopCounter, maxLoopCounter, startTime,
+                type);
+        endTimes.add(loopCounter, log.getEndTime());
+        concurrencySlots.add(event, functionId, loopCounter, log.getEndTime());
+        MongoDBAccess.spill(log);
+        entries.add(log);
+        Metrics.mark("mongodb.logs.saved", 1);
+        LogFlusher logFlusher = flusher;
+        if (logFlusher != null) {
+            try {
+                logFlusher.added();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Gets the latest end date in the list of log entries regardless of whether the function was executed within a
+     * parallelFor loop or not.
+     *
+     * @return the latest end date of the workflow execution
+     */
+    public long getLastEndDateOverall() {
+        if (entries.count() == 0) {
+            return 0;
+        }
+        return endTimes.getOverall();
+    }
+
+    /**
+     * Gets the latest end date in the list of log entries that belongs to a function that was not executed within a
+     * parallelFor loop.
+     *
+     * @return the latest end date of a function outside of a parallelFor of the workflow execution
+     */
+    public long getLastEndDateOutOfLoop() {
+        if (entries.count() == 0) {
+            return 0;
+        }
+        return endTimes.getOutOfLoop();
+    }
+
+    /**
+     * Gets the latest end date in the list of log entries that belongs to a function that was executed within a
+     * parallelFor loop.
+     *
+     * @return the latest end date of a function inside of a parallelFor of the workflow execution
+     */
+    public long getLastEndDateInLoop() {
+        if (entries.count() == 0) {
+            return 0;
+        }
+        return endTimes.getInLoop();
+    }
+
+    /**
+     * Gets the smallest end time of the current parallelFor construct that has not been used yet. Is used to determine
+     * the next starting time for a function within a parallelFor that is over the maximum concurrency limit. Blocks
+     * until such an end time is logged.
+     *
+     * @param functionId to check the log entries for
+     *
+     * @return the earliest finishing time in a parallelFor that has not been used yet for this function
+     */
+    public long getFirstAvailableStartTime(String functionId) {
+        if (entries.count() == 0) {
+            return 0;
+        }
+        // wait until an end time is available
+        try {
+            return concurrencySlots.take(functionId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return 0;
+    }
+
+    /**
+     * Adds all log entries of the workflow execution to the mongo database. If the log entries are written in the
+     * background, waits until the remaining ones are written.
+     */
+    public void addAllEntries() throws IOException {
+        LogFlusher logFlusher = flusher;
+        if (logFlusher != null) {
+            // the entries are written in the background, wait for the remaining ones
+            try {
+                logFlusher.flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+        MongoDBAccess.insertEntries(entries.snapshot());
+    }
+
+    /**
+     * Adds all log entries of the workflow execution to the mongo database without waiting for them to be written, so
+     * the workflow result can be returned right away. The entries are written unordered in batches, several batches at
+     * the same time. Entries written already are skipped, so calling it again after a failure is safe. If the log
+     * entries are written in the background, the future completes when the remaining ones are written.
+     *
+     * @return a future completing when the log entries are written, exceptionally if a batch cannot be written
+     */
+    public CompletableFuture<Void> addAllEntriesAsync() {
+        LogFlusher logFlusher = flusher;
+        if (logFlusher != null) {
+            return MongoDBAccess.runAsync(() -> {
+                try {
+                    logFlusher.flush();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        return MongoDBAccess.insertEntriesAsync(entries.snapshot());
+    }
+
+    /**
+     * Get the list of all log entries of the workflow execution. The log entries are converted to documents on every
+     * call, changes to the list are not reflected in the log entries. If the log entries are written in the
+     * background, only the log entries that were not written yet are returned.
+     *
+     * @return a list of documents containing all logs.
+     */
+    public List<Document> getAllEntries() {
+        List<Document> documents = new ArrayList<>();
+        for (LogRecord log : entries.snapshot()) {
+            documents.add(log.toDocument());
+        }
+        return documents;
+    }
+
+    /**
+     * Writes the remaining log entries to the mongo database, stops writing in the background and releases the
+     * context. Further log entries are rejected.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            addAllEntries();
+            stopWriteBehind();
+        } finally {
+            MongoDBAccess.closed(this);
+        }
+    }
+
+    /**
+     * Starts writing the log entries in the background, see
+     * {@link MongoDBAccess#enableWriteBehind(int, long, int)}.
+     *
+     * @param batchSize  the maximum amount of entries written at once
+     * @param maxAge     the maximum time in milliseconds an entry waits for its batch to be full
+     * @param maxPending the maximum amount of pending entries before saving further entries blocks
+     */
+    synchronized void startWriteBehind(int batchSize, long maxAge, int maxPending) {
+        if (flusher == null && !closed) {
+            flusher = new LogFlusher(entries, batchSize, maxAge, maxPending);
+        }
+    }
+
+    /**
+     * Writes the pending log entries and stops the background thread, if there is one.
+     */
+    void stopWriteBehind() {
+        LogFlusher logFlusher = flusher;
+        if (logFlusher != null) {
+            try {
+                logFlusher.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return the amount of log entries that were not written to the mongo database yet
+     */
+    long getBufferDepth() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,19 @@
+package at.uibk.dps.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A current value, read whenever it is requested.
+ */
+public class Gauge implements GaugeMBean {
+    private final LongSupplier value;
+
+    public Gauge(LongSupplier value) {
+        this.value = value;
+    }
+
+    @Override
+    public long getValue() {
+        return value.getAsLong();
+    }
+}
@@ -0,0 +1,8 @@
+package at.uibk.dps.metrics;
+
+/**
+ * JMX view of a {@link Gauge}.
+ */
+public interface GaugeMBean {
+    long getValue();
+}
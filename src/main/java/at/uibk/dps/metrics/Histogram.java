@@ -0,0 +1,97 @@
+package at.uibk.dps.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of non-negative values in log-linear buckets. Every power of two is split into 8 buckets, so the
+ * percentiles are at most 12.5% above the actual values. Recording is lock-free.
+ */
+public class Histogram implements HistogramMBean {
+    private static final LogLinearBuckets BUCKETS = new LogLinearBuckets(3);
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS.size(Long.MAX_VALUE));
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Records the given value, negative values are recorded as 0.
+     *
+     * @param value to record
+     */
+    public void record(long value) {
+        long recorded = Math.max(0, value);
+        buckets.incrementAndGet(BUCKETS.index(recorded));
+        count.increment();
+        sum.add(recorded);
+        long current;
+        while (recorded < (current = min.get()) && !min.compareAndSet(current, recorded)) {
+            // retry
+        }
+        while (recorded > (current = max.get()) && !max.compareAndSet(current, recorded)) {
+            // retry
+        }
+    }
+
+    /**
+     * Gets the value below which the given fraction of the recorded values lies.
+     *
+     * @param quantile between 0 and 1
+     *
+     * @return the upper bound of the bucket containing the quantile, 0 if nothing was recorded
+     */
+    public long getQuantile(double quantile) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(BUCKETS.upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getMean() {
+        long total = count.sum();
+        return total == 0 ? 0 : (double) sum.sum() / total;
+    }
+
+    @Override
+    public long getMin() {
+        return count.sum() == 0 ? 0 : min.get();
+    }
+
+    @Override
+    public long getMax() {
+        return count.sum() == 0 ? 0 : max.get();
+    }
+
+    @Override
+    public long getMedian() {
+        return getQuantile(0.5);
+    }
+
+    @Override
+    public long get95thPercentile() {
+        return getQuantile(0.95);
+    }
+
+    @Override
+    public long get99thPercentile() {
+        return getQuantile(0.99);
+    }
+}
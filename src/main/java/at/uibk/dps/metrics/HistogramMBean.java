@@ -0,0 +1,20 @@
+package at.uibk.dps.metrics;
+
+/**
+ * JMX view of a {@link Histogram}.
+ */
+public interface HistogramMBean {
+    long getCount();
+
+    double getMean();
+
+    long getMin();
+
+    long getMax();
+
+    long getMedian();
+
+    long get95thPercentile();
+
+    long get99thPercentile();
+}
@@ -0,0 +1,108 @@
+package at.uibk.dps.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the metrics in memory and registers each of them as MBean in the platform MBean server, with the object name
+ * {@code at.uibk.dps:type=<type>,name=<name>}. Latencies are recorded in microseconds.
+ */
+public class JmxMetricsRegistry implements MetricsRegistry {
+    private static final String DOMAIN = "at.uibk.dps";
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private final Map<String, Histogram> latencies = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> values = new ConcurrentHashMap<>();
+    private final Map<String, Meter> rates = new ConcurrentHashMap<>();
+    private final Map<String, Meter> errors = new ConcurrentHashMap<>();
+
+    @Override
+    public void recordLatency(String name, long nanos) {
+        getOrRegister(latencies, "Latency", name, n -> new Histogram()).record(nanos / 1000);
+    }
+
+    @Override
+    public void recordValue(String name, long value) {
+        getOrRegister(values, "Distribution", name, n -> new Histogram()).record(value);
+    }
+
+    @Override
+    public void mark(String name, long amount) {
+        getOrRegister(rates, "Rate", name, n -> new Meter()).mark(amount);
+    }
+
+    @Override
+    public void gauge(String name, LongSupplier value) {
+        register("Gauge", name, new Gauge(value));
+    }
+
+    @Override
+    public void error(String operation, Throwable error) {
+        getOrRegister(errors, "Errors", operation, n -> new Meter()).mark(1);
+    }
+
+    public Histogram getLatency(String name) {
+        return latencies.get(name);
+    }
+
+    public Histogram getValues(String name) {
+        return values.get(name);
+    }
+
+    public Meter getRate(String name) {
+        return rates.get(name);
+    }
+
+    public Meter getErrors(String operation) {
+        return errors.get(operation);
+    }
+
+    /**
+     * Gets the metric with the given name, creates and registers it on first use.
+     *
+     * @param metrics the metrics of the type
+     * @param type    of the metric
+     * @param name    of the metric
+     * @param factory creates the metric
+     *
+     * @return the metric
+     */
+    private <T> T getOrRegister(Map<String, T> metrics, String type, String name, Function<String, T> factory) {
+        T metric = metrics.get(name);
+        if (metric == null) {
+            metric = metrics.computeIfAbsent(name, n -> register(type, n, factory.apply(n)));
+        }
+        return metric;
+    }
+
+    /**
+     * Registers the given MBean, replaces an MBean with the same name.
+     *
+     * @param type  of the metric
+     * @param name  of the metric
+     * @param mBean to register
+     *
+     * @return the MBean
+     */
+    private <T> T register(String type, String name, T mBean) {
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            try {
+                server.registerMBean(mBean, objectName);
+            } catch (InstanceAlreadyExistsException e) {
+                server.unregisterMBean(objectName);
+                server.registerMBean(mBean, objectName);
+            }
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+        return mBean;
+    }
+}
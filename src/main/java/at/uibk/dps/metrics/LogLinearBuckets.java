@@ -0,0 +1,62 @@
+package at.uibk.dps.metrics;
+
+/**
+ * Maps non-negative values to log-linear buckets. Values below the amount of sub-buckets get a bucket each, every
+ * larger power of two is split into the same amount of sub-buckets, so the upper bound of a bucket is at most
+ * {@code 1 / subBuckets} above any value in it. Used by {@link Histogram} and the latency sketches of the metadata DB.
+ */
+public final class LogLinearBuckets {
+    private final int subBucketBits;
+    private final int subBuckets;
+
+    /**
+     * @param subBucketBits the amount of sub-buckets per power of two as power of two, e.g. 3 for 8 sub-buckets
+     *
+     * @throws IllegalArgumentException if the amount is not between 0 and 16
+     */
+    public LogLinearBuckets(int subBucketBits) {
+        if (subBucketBits < 0 || subBucketBits > 16) {
+            throw new IllegalArgumentException("The sub-bucket bits have to be between 0 and 16, was "
+                    + subBucketBits + ".");
+        }
+        this.subBucketBits = subBucketBits;
+        this.subBuckets = 1 << subBucketBits;
+    }
+
+    /**
+     * @param value a non-negative value
+     *
+     * @return the index of the bucket of the value
+     */
+    public int index(long value) {
+        if (value < subBuckets) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - subBucketBits)) & (subBuckets - 1);
+        return (exponent - subBucketBits + 1) * subBuckets + subBucket;
+    }
+
+    /**
+     * @param index of a bucket
+     *
+     * @return the largest value of the bucket
+     */
+    public long upperBound(int index) {
+        if (index < subBuckets) {
+            return index;
+        }
+        int shift = index / subBuckets - 1;
+        long lower = (long) (subBuckets + index % subBuckets) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * @param maxValue the largest value that is counted
+     *
+     * @return the amount of buckets needed for the values between 0 and the given value
+     */
+    public int size(long maxValue) {
+        return index(maxValue) + 1;
+    }
+}
@@ -0,0 +1,71 @@
+package at.uibk.dps.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts events and tracks their rate per second, overall and as exponentially weighted moving average over the last
+ * minute. The average is updated every 5 seconds while the meter is used.
+ */
+public class Meter implements MeterMBean {
+    private static final long TICK = TimeUnit.SECONDS.toNanos(5);
+    private static final double ALPHA = 1 - Math.exp(-5.0 / 60.0);
+
+    private final LongAdder count = new LongAdder();
+    /**
+     * The events since the last update of the average.
+     */
+    private final LongAdder uncounted = new LongAdder();
+    private final long start = System.nanoTime();
+    private final AtomicLong lastTick = new AtomicLong(start);
+    private volatile double rate;
+    private volatile boolean initialized;
+
+    /**
+     * Counts the given amount of events.
+     *
+     * @param amount of events
+     */
+    public void mark(long amount) {
+        tickIfNecessary();
+        count.add(amount);
+        uncounted.add(amount);
+    }
+
+    /**
+     * Updates the average for every tick that passed since the last update.
+     */
+    private void tickIfNecessary() {
+        long previous = lastTick.get();
+        long age = System.nanoTime() - previous;
+        if (age > TICK && lastTick.compareAndSet(previous, previous + age - age % TICK)) {
+            for (long i = age / TICK; i > 0; i--) {
+                double instantRate = uncounted.sumThenReset() / (double) TimeUnit.NANOSECONDS.toSeconds(TICK);
+                if (initialized) {
+                    rate += ALPHA * (instantRate - rate);
+                } else {
+                    rate = instantRate;
+                    initialized = true;
+                }
+            }
+        }
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getMeanRate() {
+        double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+        return seconds <= 0 ? 0 : count.sum() / seconds;
+    }
+
+    @Override
+    public double getOneMinuteRate() {
+        tickIfNecessary();
+        return rate;
+    }
+}
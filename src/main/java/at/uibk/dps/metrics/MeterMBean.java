@@ -0,0 +1,12 @@
+package at.uibk.dps.metrics;
+
+/**
+ * JMX view of a {@link Meter}.
+ */
+public interface MeterMBean {
+    long getCount();
+
+    double getMeanRate();
+
+    double getOneMinuteRate();
+}
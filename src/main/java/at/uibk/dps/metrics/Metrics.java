@@ -0,0 +1,112 @@
+package at.uibk.dps.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Records the metrics of the database access in the current {@link MetricsRegistry}.
+ */
+public class Metrics {
+    private static volatile MetricsRegistry registry = new JmxMetricsRegistry();
+    /**
+     * The registered gauges, registered again if the registry is replaced.
+     */
+    private static final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    /**
+     * The values of the gauges set with {@link #set(String, long)}.
+     */
+    private static final Map<String, AtomicLong> values = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Replaces the registry receiving the metrics. The gauges registered so far are registered in the new registry.
+     *
+     * @param metricsRegistry the new registry
+     */
+    public static synchronized void setRegistry(MetricsRegistry metricsRegistry) {
+        registry = metricsRegistry;
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            metricsRegistry.gauge(gauge.getKey(), gauge.getValue());
+        }
+    }
+
+    public static MetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Records the duration of an operation that started at the given time.
+     *
+     * @param name  of the operation
+     * @param start the result of {@link System#nanoTime()} when the operation started
+     */
+    public static void recordLatency(String name, long start) {
+        registry.recordLatency(name, System.nanoTime() - start);
+    }
+
+    /**
+     * Records a value of a distribution, e.g. a batch size.
+     *
+     * @param name  of the distribution
+     * @param value to record
+     */
+    public static void recordValue(String name, long value) {
+        registry.recordValue(name, value);
+    }
+
+    /**
+     * Counts events, e.g. processed documents, to track their rate.
+     *
+     * @param name   of the events
+     * @param amount of events
+     */
+    public static void mark(String name, long amount) {
+        registry.mark(name, amount);
+    }
+
+    /**
+     * Counts a failed operation.
+     *
+     * @param operation that failed
+     * @param error     that caused the failure
+     */
+    public static void error(String operation, Throwable error) {
+        registry.error(operation, error);
+    }
+
+    /**
+     * Registers a current value, e.g. the depth of a buffer.
+     *
+     * @param name  of the value
+     * @param value supplies the current value
+     */
+    public static synchronized void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+        registry.gauge(name, value);
+    }
+
+    /**
+     * Sets the current value of a gauge, registers the gauge on first use.
+     *
+     * @param name  of the value
+     * @param value the current value
+     */
+    public static void set(String name, long value) {
+        AtomicLong current = values.get(name);
+        if (current == null) {
+            synchronized (Metrics.class) {
+                current = values.get(name);
+                if (current == null) {
+                    current = new AtomicLong();
+                    gauge(name, current::get);
+                    values.put(name, current);
+                }
+            }
+        }
+        current.set(value);
+    }
+}
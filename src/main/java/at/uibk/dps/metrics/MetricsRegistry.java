@@ -0,0 +1,50 @@
+package at.uibk.dps.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Receives the metrics of the database access. The default registry exposes them through JMX, see
+ * {@link JmxMetricsRegistry}, another registry can be set with {@link Metrics#setRegistry(MetricsRegistry)}.
+ */
+public interface MetricsRegistry {
+
+    /**
+     * Records the duration of an operation.
+     *
+     * @param name  of the operation
+     * @param nanos the duration in nanoseconds
+     */
+    void recordLatency(String name, long nanos);
+
+    /**
+     * Records a value of a distribution, e.g. a batch size.
+     *
+     * @param name  of the distribution
+     * @param value to record
+     */
+    void recordValue(String name, long value);
+
+    /**
+     * Counts events, e.g. processed documents, to track their rate.
+     *
+     * @param name   of the events
+     * @param amount of events
+     */
+    void mark(String name, long amount);
+
+    /**
+     * Registers a current value, e.g. the depth of a buffer.
+     *
+     * @param name  of the value
+     * @param value supplies the current value
+     */
+    void gauge(String name, LongSupplier value);
+
+    /**
+     * Counts a failed operation.
+     *
+     * @param operation that failed
+     * @param error     that caused the failure
+     */
+    void error(String operation, Throwable error);
+}
@@ -4,12 +4,26 @@ package at.uibk.dps.util;
  * The log event.
  */
 public enum Event {
-    WORKFLOW_START,
-    WORKFLOW_END,
-    WORKFLOW_FAILED,
-    FUNCTION_START,
-    FUNCTION_END,
-    FUNCTION_FAILED,
-    FUNCTION_CANCELED,
-    PARALLEL_FOR_END
+    WORKFLOW_START(null),
+    WORKFLOW_END(null),
+    WORKFLOW_FAILED(null),
+    FUNCTION_START(0L),
+    FUNCTION_END(0L),
+    FUNCTION_FAILED(0L),
+    FUNCTION_CANCELED(2L),
+    PARALLEL_FOR_END(null);
+
+    /**
+     * The initial value of the 'done' field of a log with this event, null if the log is not used to update the
+     * metadata DB.
+     */
+    private final Long done;
+
+    Event(Long done) {
+        this.done = done;
+    }
+
+    public Long getDone() {
+        return done;
+    }
 }
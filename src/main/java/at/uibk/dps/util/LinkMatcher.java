@@ -0,0 +1,110 @@
+package at.uibk.dps.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Finds all occurrences of a fixed set of patterns in a single pass over a text (Aho-Corasick). The automaton is
+ * built once, matching a text costs one table lookup per character.
+ */
+final class LinkMatcher {
+    /**
+     * Maps each ASCII character to its column in the transition table, 0 for characters that are not part of any
+     * pattern.
+     */
+    private final byte[] columns = new byte[128];
+    /**
+     * The next state for each state and column.
+     */
+    private final int[][] transitions;
+    /**
+     * The bits of the patterns ending in each state, including the ones ending in its suffixes.
+     */
+    private final int[] outputs;
+
+    /**
+     * Builds the automaton for the given patterns. Pattern i sets bit i of the result of {@link #match(String)}.
+     *
+     * @param patterns to find, at most 32 patterns consisting of ASCII characters
+     */
+    LinkMatcher(String... patterns) {
+        if (patterns.length > Integer.SIZE) {
+            throw new IllegalArgumentException("At most " + Integer.SIZE + " patterns are supported.");
+        }
+        int columnCount = 1;
+        for (String pattern : patterns) {
+            for (char c : pattern.toCharArray()) {
+                if (c >= columns.length) {
+                    throw new IllegalArgumentException("Pattern '" + pattern + "' is not ASCII.");
+                }
+                if (columns[c] == 0) {
+                    columns[c] = (byte) columnCount++;
+                }
+            }
+        }
+
+        // build the trie, 0 marks a missing transition as the root is never a target, column 0 always stays 0, so
+        // characters outside of the patterns lead back to the root
+        List<int[]> trie = new ArrayList<>();
+        List<Integer> output = new ArrayList<>();
+        trie.add(new int[columnCount]);
+        output.add(0);
+        for (int i = 0; i < patterns.length; i++) {
+            int state = 0;
+            for (char c : patterns[i].toCharArray()) {
+                if (trie.get(state)[columns[c]] == 0) {
+                    trie.get(state)[columns[c]] = trie.size();
+                    trie.add(new int[columnCount]);
+                    output.add(0);
+                }
+                state = trie.get(state)[columns[c]];
+            }
+            output.set(state, output.get(state) | 1 << i);
+        }
+
+        // resolve the failure links breadth first, so every missing transition points to the longest suffix
+        transitions = trie.toArray(new int[0][]);
+        outputs = new int[transitions.length];
+        int[] failure = new int[transitions.length];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int column = 0; column < columnCount; column++) {
+            if (transitions[0][column] != 0) {
+                queue.add(transitions[0][column]);
+            }
+        }
+        outputs[0] = output.get(0);
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs[state] = output.get(state) | outputs[failure[state]];
+            for (int column = 0; column < columnCount; column++) {
+                int next = transitions[state][column];
+                if (next != 0) {
+                    failure[next] = transitions[failure[state]][column];
+                    queue.add(next);
+                } else {
+                    transitions[state][column] = transitions[failure[state]][column];
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the patterns occurring in the given text.
+     *
+     * @param text to search
+     *
+     * @return the bits of all patterns that occur in the text
+     */
+    int match(String text) {
+        int state = 0;
+        int found = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            state = transitions[state][c < columns.length ? columns[c] : 0];
+            found |= outputs[state];
+        }
+        return found;
+    }
+}
@@ -0,0 +1,92 @@
+package at.uibk.dps.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache that evicts the least recently used entries. The entries are distributed over independently locked
+ * segments, so concurrent lookups of different keys rarely contend. Each segment evicts on its own, so the cache
+ * holds at most the given capacity, rounded up to a multiple of the amount of segments.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+final class LruCache<K, V> {
+    private final Segment<K, V>[] segments;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param capacity the maximum amount of entries
+     * @param segments the amount of segments, rounded up to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    LruCache(int capacity, int segments) {
+        int count = 1;
+        while (count < segments) {
+            count <<= 1;
+        }
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            this.segments[i] = new Segment<>((capacity + count - 1) / count);
+        }
+    }
+
+    /**
+     * @param key to look up
+     *
+     * @return the cached value, null if there is none
+     */
+    V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+    /**
+     * Caches the given value, evicting the least recently used entry of its segment if it is full.
+     *
+     * @param key   of the value
+     * @param value to cache
+     */
+    void put(K key, V value) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    void clear() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+
+    /**
+     * A map in access order that removes its eldest entry once it exceeds its capacity.
+     */
+    private static final class Segment<K, V> extends LinkedHashMap<K, V> {
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package at.uibk.dps.util;
+
+/**
+ * The mode used to update the metadata DB.
+ */
+public enum UpdateMode {
+    /**
+     * Updates the metadata DB once per log entry.
+     */
+    SEQUENTIAL,
+    /**
+     * Collects all log entries per entry of the metadata DB and updates each entry once.
+     */
+    AGGREGATED,
+    /**
+     * Updates the metadata DB once per log entry on multiple threads, partitioned by the function id.
+     */
+    PARALLEL,
+    /**
+     * Updates the metadata DB once per log entry on multiple threads like {@link #PARALLEL}, but each entry of the
+     * metadata DB is updated with a single statement instead of being read and written.
+     */
+    ATOMIC,
+    /**
+     * Updates the metadata DB with the statements of {@link #ATOMIC} in JDBC batches and commits them in chunks of log
+     * entries.
+     */
+    BATCHED
+}
@@ -2,6 +2,8 @@ package at.uibk.dps.util;
 
 import at.uibk.dps.exceptions.RegionDetectionException;
 
+import java.util.regex.Pattern;
+
 public class Utils {
 
     /**
@@ -9,6 +11,46 @@ public class Utils {
      */
     private static final String PROTOCOL = "https://";
 
+    /**
+     * The patterns found by {@link #matcher}, the bit of each pattern is its index.
+     */
+    private static final String[] LINK_PATTERNS = {
+            ".functions.cloud.ibm.com/",
+            ".functions.appdomain.cloud/",
+            "arn:aws:lambda:",
+            "cloudfunctions.net",
+            "azure",
+            "fc.aliyuncs",
+            "functions.cloud.ibm",
+            "functions.appdomain.cloud"
+    };
+    private static final int IBM_LINK = 0b11;
+    private static final int AWS_LINK = 1 << 2;
+    private static final int GOOGLE_LINK = 1 << 3;
+    private static final int AZURE_LINK = 1 << 4;
+    private static final int ALIBABA_LINK = 1 << 5;
+    private static final int IBM_CLOUD = 1 << 6;
+    private static final int IBM_APPDOMAIN = 1 << 7;
+
+    /**
+     * Finds all provider specific parts of a resource link in a single pass.
+     */
+    private static final LinkMatcher matcher = new LinkMatcher(LINK_PATTERNS);
+
+    /**
+     * The patterns splitting a resource link into its region, compiled once instead of on every split.
+     */
+    private static final Pattern PROTOCOL_SPLIT = Pattern.compile(Pattern.quote(PROTOCOL));
+    private static final Pattern IBM_CLOUD_SPLIT = Pattern.compile("\\.functions\\.cloud\\.ibm");
+    private static final Pattern IBM_APPDOMAIN_SPLIT = Pattern.compile("\\.functions\\.appdomain\\.cloud");
+    private static final Pattern AWS_SPLIT = Pattern.compile("lambda:");
+    private static final Pattern GOOGLE_SPLIT = Pattern.compile("\\.cloudfunctions\\.net");
+
+    /**
+     * The provider and region of recently used resource links.
+     */
+    private static final LruCache<String, ResourceLink> resourceLinks = new LruCache<>(4096, 16);
+
     /**
      * Detect the provider with given function url.
      *
@@ -17,22 +59,7 @@ public class Utils {
      * @return the detected provider.
      */
     public static Provider detectProvider(String resourceLink) {
-
-        /* Check for providers */
-        if (resourceLink.contains(".functions.cloud.ibm.com/") || resourceLink.contains(".functions.appdomain.cloud/")) {
-            return Provider.IBM;
-        } else if (resourceLink.contains("arn:aws:lambda:")) {
-            return Provider.AWS;
-        } else if (resourceLink.contains("cloudfunctions.net")) {
-            return Provider.GOOGLE;
-        } else if (resourceLink.contains("azure")) {
-            return Provider.AZURE;
-        } else if (resourceLink.contains("fc.aliyuncs")) {
-            return Provider.ALIBABA;
-        }
-
-        // Inform Scheduler Provider Detection Failed
-        return Provider.FAIL;
+        return classify(resourceLink).provider;
     }
 
     /**
@@ -45,19 +72,16 @@ public class Utils {
      * @throws RegionDetectionException on region detection failure.
      */
     public static String detectRegion(String resourceLink) throws RegionDetectionException {
-        String regionName;
-        switch (Utils.detectProvider(resourceLink)) {
+        ResourceLink link = classify(resourceLink);
+        if (link.region != null) {
+            return link.region;
+        }
+        switch (link.provider) {
             case IBM:
-                if (resourceLink.contains("functions.cloud.ibm")) {
-                    return resourceLink.split(PROTOCOL)[1].split("\\.functions\\.cloud\\.ibm")[0];
-                } else if (resourceLink.contains("functions.appdomain.cloud")) {
-                    return resourceLink.split(PROTOCOL)[1].split("\\.functions\\.appdomain\\.cloud")[0];
-                }
-                return resourceLink.split(PROTOCOL)[1].split("\\.functions\\.cloud\\.ibm")[0];
             case AWS:
-                return resourceLink.split("lambda:")[1].split(":")[0];
             case GOOGLE:
-                return resourceLink.split(PROTOCOL)[1].split("\\.cloudfunctions\\.net")[0];
+                // the link is malformed, splitting it again throws the original exception
+                return splitRegion(resourceLink, link.provider, link.matches);
             case AZURE:
                 throw new RegionDetectionException("Azure currently not supported.");
             case ALIBABA:
@@ -67,4 +91,98 @@ public class Utils {
         }
     }
 
+    /**
+     * Gets the provider and region of the given resource link from the cache, detects them if the link is not cached
+     * yet.
+     *
+     * @param resourceLink the resource of the function
+     *
+     * @return the provider and region of the resource link
+     */
+    private static ResourceLink classify(String resourceLink) {
+        ResourceLink link = resourceLinks.get(resourceLink);
+        if (link == null) {
+            int matches = matcher.match(resourceLink);
+            Provider provider = getProvider(matches);
+            String region = null;
+            if (provider == Provider.IBM || provider == Provider.AWS || provider == Provider.GOOGLE) {
+                try {
+                    region = splitRegion(resourceLink, provider, matches);
+                } catch (RuntimeException e) {
+                    // the region is detected again by detectRegion, so the exception is thrown there
+                }
+            }
+            link = new ResourceLink(provider, region, matches);
+            resourceLinks.put(resourceLink, link);
+        }
+        return link;
+    }
+
+    /**
+     * Gets the provider from the patterns found in a resource link, in the order the providers were checked with
+     * {@link String#contains}.
+     *
+     * @param matches the bits of the patterns found by {@link #matcher}
+     *
+     * @return the detected provider
+     */
+    private static Provider getProvider(int matches) {
+        if ((matches & IBM_LINK) != 0) {
+            return Provider.IBM;
+        } else if ((matches & AWS_LINK) != 0) {
+            return Provider.AWS;
+        } else if ((matches & GOOGLE_LINK) != 0) {
+            return Provider.GOOGLE;
+        } else if ((matches & AZURE_LINK) != 0) {
+            return Provider.AZURE;
+        } else if ((matches & ALIBABA_LINK) != 0) {
+            return Provider.ALIBABA;
+        }
+
+        // Inform Scheduler Provider Detection Failed
+        return Provider.FAIL;
+    }
+
+    /**
+     * Splits the region from a resource link of IBM, AWS or Google.
+     *
+     * @param resourceLink the resource of the function
+     * @param provider     the provider of the resource link
+     * @param matches      the bits of the patterns found by {@link #matcher}
+     *
+     * @return the region
+     */
+    private static String splitRegion(String resourceLink, Provider provider, int matches) {
+        switch (provider) {
+            case IBM:
+                if ((matches & IBM_APPDOMAIN) != 0 && (matches & IBM_CLOUD) == 0) {
+                    return IBM_APPDOMAIN_SPLIT.split(PROTOCOL_SPLIT.split(resourceLink)[1])[0];
+                }
+                return IBM_CLOUD_SPLIT.split(PROTOCOL_SPLIT.split(resourceLink)[1])[0];
+            case AWS:
+                return AWS_SPLIT.split(resourceLink)[1].split(":")[0];
+            case GOOGLE:
+                return GOOGLE_SPLIT.split(PROTOCOL_SPLIT.split(resourceLink)[1])[0];
+            default:
+                throw new IllegalArgumentException("No region for provider " + provider + ".");
+        }
+    }
+
+    /**
+     * The detected provider and region of a resource link.
+     */
+    private static final class ResourceLink {
+        final Provider provider;
+        /**
+         * The region, null if the provider has no region or the link is malformed.
+         */
+        final String region;
+        final int matches;
+
+        ResourceLink(Provider provider, String region, int matches) {
+            this.provider = provider;
+            this.region = region;
+            this.matches = matches;
+        }
+    }
 }